@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates.
+ *
+ * This source code is licensed under the UPL license found in the
+ * LICENSE.txt file in the root directory of this source tree.
+ */
+
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compute the checksum of a cached archive, as {@code Downloader.computeChecksum} does, reading it
+ * through a buffered stream, a memory mapping, or a large direct buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChecksumBenchmark {
+
+  static final MethodHandle NEW_HASHER = Fixtures.constructor("Download$Hasher");
+  static final MethodHandle UPDATE_PATH =
+      Fixtures.method("Download$Hasher", "update", Path.class);
+  static final MethodHandle UPDATE_BUFFER =
+      Fixtures.method("Download$Hasher", "update", ByteBuffer.class);
+  static final MethodHandle CHECKSUM = Fixtures.method("Download$Hasher", "checksum");
+
+  /** Size of the archive in MiB, the larger one is about the size of a JDK archive. */
+  @Param({"16", "192"})
+  int megabytes;
+
+  Path archive;
+
+  @Setup(Level.Trial)
+  public void createArchive() throws Exception {
+    archive = Fixtures.archive(megabytes * 1024L * 1024L);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteArchive() throws Exception {
+    Files.deleteIfExists(archive);
+  }
+
+  @Benchmark
+  public String bufferedStream() throws Throwable {
+    var hasher = NEW_HASHER.invoke();
+    UPDATE_PATH.invoke(hasher, archive);
+    return (String) CHECKSUM.invoke(hasher);
+  }
+
+  @Benchmark
+  public String memoryMapped() throws Throwable {
+    var hasher = NEW_HASHER.invoke();
+    try (var channel = FileChannel.open(archive)) {
+      var size = channel.size();
+      for (long position = 0; position < size; ) {
+        var length = Math.min(size - position, Integer.MAX_VALUE);
+        UPDATE_BUFFER.invoke(hasher, channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        position += length;
+      }
+    }
+    return (String) CHECKSUM.invoke(hasher);
+  }
+
+  @Benchmark
+  public String directBuffer() throws Throwable {
+    var hasher = NEW_HASHER.invoke();
+    var buffer = ByteBuffer.allocateDirect(1 << 20);
+    try (var channel = FileChannel.open(archive)) {
+      while (channel.read(buffer.clear()) > 0) UPDATE_BUFFER.invoke(hasher, buffer.flip());
+    }
+    return (String) CHECKSUM.invoke(hasher);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates.
+ *
+ * This source code is licensed under the UPL license found in the
+ * LICENSE.txt file in the root directory of this source tree.
+ */
+
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Fixtures and reflective access to the programs under benchmark.
+ *
+ * <p>{@code Download} and {@code ListOpenJavaDevelopmentKits} are single-file programs in the
+ * unnamed package, which can't be imported from a named one; their members are looked up by name.
+ */
+final class Fixtures {
+
+  /** Find a class nested in one of the programs, like {@code Download$Hasher}. */
+  static Class<?> type(String name) {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /** Unreflect a constructor of a package-private class. */
+  static MethodHandle constructor(String type, Class<?>... parameters) {
+    try {
+      var constructor = type(type).getDeclaredConstructor(parameters);
+      constructor.setAccessible(true);
+      return MethodHandles.lookup().unreflectConstructor(constructor);
+    } catch (ReflectiveOperationException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /** Unreflect a static or instance method of a package-private class. */
+  static MethodHandle method(String type, String name, Class<?>... parameters) {
+    try {
+      var method = type(type).getDeclaredMethod(name, parameters);
+      method.setAccessible(true);
+      return MethodHandles.lookup().unreflect(method);
+    } catch (ReflectiveOperationException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /** Assign a static field of a package-private class. */
+  static void set(String type, String name, Object value) {
+    try {
+      var field = type(type).getDeclaredField(name);
+      field.setAccessible(true);
+      field.set(null, value);
+    } catch (ReflectiveOperationException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /** Read a fixture bundled with the benchmarks. */
+  static InputStream resource(String name) {
+    var stream = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+    if (stream == null) throw new IllegalStateException("No such fixture: " + name);
+    return stream;
+  }
+
+  /** Read the lines of a saved page. */
+  static List<String> lines(String name) {
+    try (var stream = resource(name)) {
+      return new String(stream.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  /** Load the URI mapping bundled with the action. */
+  static Properties mapping() {
+    try (var stream = resource("jdk.java.net-uri.properties")) {
+      var properties = new Properties();
+      properties.load(stream);
+      return properties;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  /** Write a file of random, thus incompressible, bytes like a JDK archive of the given size. */
+  static Path archive(long size) throws IOException {
+    var file = Files.createTempFile("bench-", ".tar.gz");
+    var random = new Random(size);
+    var buffer = ByteBuffer.allocate(1 << 20);
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      for (long written = 0; written < size; ) {
+        random.nextBytes(buffer.array());
+        buffer.clear().limit((int) Math.min(buffer.capacity(), size - written));
+        while (buffer.hasRemaining()) written += channel.write(buffer);
+      }
+    }
+    return file;
+  }
+
+  private Fixtures() {}
+}
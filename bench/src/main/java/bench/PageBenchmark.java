@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates.
+ *
+ * This source code is licensed under the UPL license found in the
+ * LICENSE.txt file in the root directory of this source tree.
+ */
+
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse saved {@code jdk.java.net} pages line by line, as {@code Parser.parse} does while their
+ * lines are received.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageBenchmark {
+
+  static final String PROGRAM = "ListOpenJavaDevelopmentKits";
+  static final MethodHandle PAGE_OF = Fixtures.method(PROGRAM + "$Page", "of", String.class);
+  static final MethodHandle WITH_ALIAS =
+      Fixtures.method(PROGRAM + "$Page", "withAlias", String.class);
+  static final MethodHandle NEW_LINE_PARSER =
+      Fixtures.constructor(PROGRAM + "$LineParser", Fixtures.type(PROGRAM + "$Page"));
+  static final MethodHandle SECTION = Fixtures.method(PROGRAM + "$LineParser", "section");
+
+  /** Name of the saved page, a general-availability and an early-access one. */
+  @Param({"26", "loom"})
+  String name;
+
+  Object page;
+  List<String> lines;
+
+  @Setup
+  public void setup() throws Throwable {
+    page = PAGE_OF.invoke(name);
+    page = WITH_ALIAS.invoke(page, name + ",latest");
+    lines = Fixtures.lines(name + ".html");
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public Object parse() throws Throwable {
+    var parser = (Flow.Subscriber<String>) NEW_LINE_PARSER.invoke(page);
+    for (var line : lines) parser.onNext(line);
+    parser.onComplete();
+    return SECTION.invoke(parser);
+  }
+}
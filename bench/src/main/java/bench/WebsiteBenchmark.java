@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates.
+ *
+ * This source code is licensed under the UPL license found in the
+ * LICENSE.txt file in the root directory of this source tree.
+ */
+
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parse version strings from URIs and look up URIs of JDKs, as done once or twice per run of the
+ * action, over all keys of the bundled {@code jdk.java.net-uri.properties} file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebsiteBenchmark {
+
+  static final String WEBSITE = "Download$Website";
+  static final MethodHandle FIND = Fixtures.method(WEBSITE, "find", String.class);
+  static final MethodHandle FIND_URI =
+      Fixtures.method(WEBSITE, "findUri", Fixtures.type("Download$JDK"));
+  static final MethodHandle PARSE_VERSION =
+      Fixtures.method(WEBSITE, "parseVersion", String.class);
+  static final MethodHandle PARSE_VERSION_PATTERNS =
+      Fixtures.method(WEBSITE, "parseVersionPatterns");
+  static final MethodHandle NEW_JDK =
+      Fixtures.constructor(
+          "Download$JDK", String.class, String.class, String.class, String.class, String.class);
+
+  Object oracle;
+  Object javaNet;
+  List<String> oracleUris;
+  List<String> javaNetUris;
+  List<Object> javaNetJDKs;
+
+  @Setup
+  public void setup() throws Throwable {
+    var mapping = Fixtures.mapping();
+    Fixtures.set("Download$JavaNetWebsite", "URI_MAPPING", mapping); // no remote lookup
+    oracle = ((Optional<?>) FIND.invoke("oracle.com")).orElseThrow();
+    javaNet = ((Optional<?>) FIND.invoke("jdk.java.net")).orElseThrow();
+    javaNetUris = mapping.values().stream().map(String::valueOf).sorted().toList();
+    oracleUris =
+        javaNetUris.stream()
+            .map(uri -> uri.substring(uri.lastIndexOf('/') + 1).replace("openjdk-", "jdk-"))
+            .map(file -> "https://download.oracle.com/java/26/archive/" + file)
+            .toList();
+    var jdks = new ArrayList<Object>();
+    for (var key : mapping.stringPropertyNames().stream().sorted().toList()) {
+      var components = key.split(",");
+      var type = components[2].equals("windows") ? "zip" : "tar.gz";
+      jdks.add(NEW_JDK.invoke(components[0], components[1], components[2], components[3], type));
+    }
+    javaNetJDKs = List.copyOf(jdks);
+  }
+
+  @Benchmark
+  public void parseOracleVersions(Blackhole blackhole) throws Throwable {
+    for (var uri : oracleUris) blackhole.consume(PARSE_VERSION.invoke(oracle, uri));
+  }
+
+  @Benchmark
+  public void parseJavaNetVersions(Blackhole blackhole) throws Throwable {
+    for (var uri : javaNetUris) blackhole.consume(PARSE_VERSION.invoke(javaNet, uri));
+  }
+
+  @Benchmark
+  public Object createVersionPatterns() throws Throwable {
+    return PARSE_VERSION_PATTERNS.invoke(javaNet);
+  }
+
+  @Benchmark
+  public void findJavaNetUris(Blackhole blackhole) throws Throwable {
+    for (var jdk : javaNetJDKs) blackhole.consume(FIND_URI.invoke(javaNet, jdk));
+  }
+}
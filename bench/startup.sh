@@ -0,0 +1,78 @@
+#!/usr/bin/env bash
+#
+# Copyright (c) 2026, Oracle and/or its affiliates.
+#
+# This source code is licensed under the UPL license found in the
+# LICENSE.txt file in the root directory of this source tree.
+#
+
+#
+# Measure the startup time of Download launched by ../src/launch.sh from its source file, from a
+# precompiled jar, from a precompiled jar with a dynamic AppCDS archive, and by default on a
+# GitHub-hosted runner, from the jar of the release workflow.
+#
+# Usage: startup.sh [RUNS]
+#
+# Each launch performs a dry run of `oracle.com 26`: it resolves the URI and sends a HEAD request
+# over TLS, loading the HTTP client and TLS classes of a real run, but downloads nothing. Without
+# network access, the request fails after the same classes were loaded. Every run starts with an
+# empty launcher cache: the cold launch includes building the jar and recording the archive, as on
+# a runner without a persistent cache, and the warm launch right after it uses them. The released
+# jar is built like the release workflow does and served from a local directory, so its cold
+# launch includes fetching and verifying it. Uses the `java` found via JAVA_HOME or on the PATH.
+#
+
+set -o errexit -o nounset -o pipefail
+
+runs=${1:-10}
+root=$(cd "$(dirname "$0")/.." && pwd)
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+bin=${JAVA_HOME:+$JAVA_HOME/bin/}
+cache=$(mktemp -d)
+trap 'rm -rf "$cache"' EXIT
+
+millis() {
+  local nanos
+  nanos=$(date +%s%N)
+  echo $((nanos / 1000000))
+}
+
+# Launch Download once, returning its duration in milliseconds, whether the dry run failed or not
+launch() {
+  local start
+  start=$(millis)
+  "$@" "$root/src/launch.sh" "$java" "$root/src/Download.java" \
+      "-Duser.home=$cache/home" -Dry-run=true -- oracle.com 26 > /dev/null 2>&1 || true
+  echo $(($(millis) - start))
+}
+
+measure() {
+  local label=$1 cold=0 warm=0 min=0 elapsed
+  shift
+  launch "$@" > /dev/null # warm up the file system cache
+  for ((run = 1; run <= runs; run++)); do
+    rm -rf "$SETUP_JAVA_LAUNCHER_CACHE"
+    cold=$((cold + $(launch "$@")))
+    elapsed=$(launch "$@")
+    warm=$((warm + elapsed))
+    if [ $min -eq 0 ] || [ $elapsed -lt $min ]; then min=$elapsed; fi
+  done
+  printf '%-24s %8d ms cold %8d ms warm %8d ms warm min\n' \
+      "$label" $((cold / runs)) $((warm / runs)) $min
+}
+
+export SETUP_JAVA_LAUNCHER_CACHE=$cache/launcher
+"$java" -version 2>&1 | head -n 1
+echo "$runs runs of a dry run of Download, means of a cold and a warm launch each"
+measure "source launch" env SETUP_JAVA_LAUNCHER=source
+measure "precompiled jar" env SETUP_JAVA_LAUNCHER=jar
+measure "precompiled jar and CDS" env SETUP_JAVA_LAUNCHER=cds
+
+release=$cache/release
+file=Download-$(sha256sum < "$root/src/Download.java" | cut -c 1-16).jar
+mkdir -p "$release"
+"${bin}javac" --release 21 -nowarn -d "$cache/classes" "$root/src/Download.java"
+"${bin}jar" --create --file "$release/$file" --main-class Download -C "$cache/classes" .
+(cd "$release" && sha256sum "$file" > "$file.sha256")
+measure "released jar (auto)" env SETUP_JAVA_LAUNCHER=auto RUNNER_ENVIRONMENT=github-hosted \
+    "SETUP_JAVA_LAUNCHER_URL=file://$release"
@@ -1,316 +1,3316 @@
 /*
- * Copyright (c) 2022, 2024, Oracle and/or its affiliates.
+ * Copyright (c) 2022, 2026, Oracle and/or its affiliates.
  *
  * This source code is licensed under the UPL license found in the
  * LICENSE.txt file in the root directory of this source tree.
  */
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.StringReader;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.math.BigInteger;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
 
 /** Download a JDK build. */
 public class Download {
   /** Main entry-point. */
   public static void main(String... args) {
-    main(Boolean.getBoolean(/*-D*/ "ry-run"), args);
+    var recording = FlightRecording.start();
+    try {
+      if (args.length == 1 && args[0].equals("prune")) {
+        try {
+          Store.of().prune();
+        } catch (IOException exception) {
+          throw new UncheckedIOException(exception);
+        }
+        return;
+      }
+      if (args.length == 1 && args[0].equals("serve")) {
+        try {
+          Proxy.serve();
+        } catch (Exception exception) {
+          throw new Error(exception);
+        }
+        return;
+      }
+      main(Boolean.getBoolean(/*-D*/ "ry-run"), args);
+    } finally {
+      if (recording != null) recording.close();
+    }
   }
 
   /** Entry-point also used by tests. */
   static void main(boolean dryRun, String... args) {
+    Metrics.RUN.clear();
+    Metrics.RUN.add("startup", Duration.ofMillis(ManagementFactory.getRuntimeMXBean().getUptime()));
     // Pre-allocate action outputs
     var outputs = new TreeMap<String, String>();
     outputs.put("archive", "NOT-SET");
     outputs.put("version", "NOT-SET");
+    var browser = new Browser();
     try {
       if (args.length == 0) {
-        throw new Error("Usage: Download URI or WEBSITE RELEASE VERSION");
-      }
-      var deque = new ArrayDeque<>(List.of(args));
-      var first = deque.removeFirst(); // URI or WEBSITE
-
-      // Determine website from first argument
-      var website =
-          Website.find(first).orElseThrow(() -> new Error("Could not find website for " + first));
-      GitHub.debug("website: " + website);
-
-      // Create JDK descriptor
-      var jdk =
-          new JDK(
-              deque.isEmpty() ? "ga" : deque.removeFirst().toLowerCase(),
-              deque.isEmpty() ? "latest" : deque.removeFirst().toLowerCase(),
-              deque.isEmpty() ? JDK.computeOsName() : deque.removeFirst(),
-              deque.isEmpty() ? JDK.computeOsArch() : deque.removeFirst(),
-              deque.isEmpty() ? JDK.computeFileType() : deque.removeFirst());
-      GitHub.debug("jdk: " + jdk);
-
-      // Select or find URI based on the JDK descriptor
-      var uri =
-          args.length == 1
-              ? first
-              : website.findUri(jdk).orElseThrow(() -> new Error("Could not find URI of " + jdk));
-      GitHub.debug("uri: " + uri);
-      if (!(uri.endsWith(".tar.gz") || uri.endsWith(".zip"))) {
-        throw new IllegalArgumentException("URI must end with `.tar.gz` or `.zip`: " + uri);
-      }
-
-      // Emit warning when using an archived JDK build
-      if (website.isArchivedUri(uri)) {
-        GitHub.warn(
-            """
-            JDK resolved to an archived build!
-            These older versions of the JDK are provided to help developers debug issues in older systems.
-            They are not updated with the latest security patches and are not recommended for use in production.
-            """);
-      }
-
-      // Acquire JDK archive
-      var archive = website.computeArchivePath(uri);
-      GitHub.debug("archive: " + archive);
-      var downloader = new Downloader(archive, uri);
-      if (website.isMovingResourceUri(uri)) {
-        downloader.checkSizeAndDeleteIfDifferent();
-      }
-      downloader.downloadArchive(dryRun);
-      downloader.verifyChecksums(website.getChecksum(uri));
-      System.out.printf("Archive %s in %s%n", archive.getFileName(), archive.getParent().toUri());
-
-      // Set outputs
-      outputs.put("archive", archive.toString());
-      var digit = Character.isDigit(jdk.release.charAt(0));
-      outputs.put("version", website.computeVersionString(uri, digit ? "PARSE_URI" : "HASH_URI"));
+        throw new Error("Usage: Download URI or WEBSITE RELEASE VERSION or batch DESCRIPTOR...");
+      }
+      if (args[0].equals("batch")) {
+        outputs.putAll(acquireAll(List.of(args).subList(1, args.length), browser, dryRun));
+      } else {
+        var resolution = Metrics.RUN.time("resolve", () -> resolve(List.of(args), browser));
+        var acquisition = acquire(resolution, browser, dryRun);
+        outputs.put("archive", acquisition.archive().toString());
+        if (acquisition.home() != null) outputs.put("home", acquisition.home().toString());
+        outputs.put("version", resolution.computeVersionString());
+      }
+      if (!dryRun) Metrics.RUN.time("prune", Download::prune);
     } catch (Exception exception) {
       GitHub.error("Error detected: " + exception);
       throw new Error(exception); // ensure non-zero result code is returned
     } finally {
+      Metrics.RUN.count("bytes", browser.received.get());
+      Metrics.RUN.count("requests", browser.requests.get());
+      outputs.put("timings", Metrics.RUN.toJson());
+      outputs.put("throughput", Metrics.RUN.computeThroughput());
       if (dryRun) {
         System.out.println("Dry-run of run with " + List.of(args));
         for (var output : outputs.entrySet()) {
           System.out.println(" - " + output.getKey() + '=' + output.getValue());
         }
-      } else {
-        outputs.forEach(GitHub::setOutput);
+      } else {
+        outputs.forEach(GitHub::setOutput);
+        Metrics.RUN.write();
+      }
+    }
+  }
+
+  /** Prune the default store after acquiring archives, warning about failures. */
+  static void prune() {
+    try {
+      Store.of().prune();
+    } catch (IOException | UncheckedIOException exception) {
+      GitHub.warn("Pruning the store failed: " + exception);
+    }
+  }
+
+  /** Resolve a URI or website, release, version, and more JDK descriptor components. */
+  static Resolution resolve(List<String> arguments, Browser browser) {
+    var deque = new ArrayDeque<>(arguments);
+    var first = deque.removeFirst(); // URI or WEBSITE
+
+    // Determine website from first argument
+    var website =
+        Website.find(first, browser)
+            .orElseThrow(() -> new Error("Could not find website for " + first));
+    GitHub.debug("website: " + website);
+
+    // Create JDK descriptor
+    var jdk =
+        new JDK(
+            deque.isEmpty() ? "ga" : deque.removeFirst().toLowerCase(),
+            deque.isEmpty() ? "latest" : deque.removeFirst().toLowerCase(),
+            deque.isEmpty() ? JDK.computeOsName() : deque.removeFirst(),
+            deque.isEmpty() ? JDK.computeOsArch() : deque.removeFirst(),
+            deque.isEmpty() ? JDK.computeFileType() : deque.removeFirst());
+    GitHub.debug("jdk: " + jdk);
+
+    // Select or find URI based on the JDK descriptor
+    var uri =
+        arguments.size() == 1
+            ? first
+            : website.findUri(jdk).orElseThrow(() -> new Error("Could not find URI of " + jdk));
+    GitHub.debug("uri: " + uri);
+    if (!(uri.endsWith(".tar.gz") || uri.endsWith(".zip"))) {
+      throw new IllegalArgumentException("URI must end with `.tar.gz` or `.zip`: " + uri);
+    }
+    return new Resolution(website, jdk, uri);
+  }
+
+  /**
+   * Download and verify the archive of a resolved JDK, and extract it if {@code -Dextract=true}.
+   */
+  static Acquisition acquire(Resolution resolution, Browser browser, boolean dryRun)
+      throws Exception {
+    var website = resolution.website();
+    var uri = resolution.uri();
+
+    // Emit warning when using an archived JDK build
+    if (website.isArchivedUri(uri)) {
+      GitHub.warn(
+          """
+          JDK resolved to an archived build!
+          These older versions of the JDK are provided to help developers debug issues in older systems.
+          They are not updated with the latest security patches and are not recommended for use in production.
+          """);
+    }
+
+    // Acquire JDK archive
+    var archive = website.computeArchivePath(uri);
+    GitHub.debug("archive: " + archive);
+    var store = Store.of(archive);
+    Path home = null;
+    var lock = store.lock(archive);
+    try {
+      var downloader = new Downloader(archive, uri, browser, website.computeMirrorUris(uri));
+      var moving = website.isMovingResourceUri(uri);
+      downloader.acquireArchive(website.getChecksum(uri), moving, dryRun);
+      if (Files.exists(archive)) {
+        Metadata.load(archive).recordAccess();
+        if (Downloader.isExtracting() && !dryRun) {
+          home = Metrics.RUN.time("extract", downloader::extractArchive);
+        }
+      }
+    } finally {
+      lock.close();
+    }
+    System.out.printf("Archive %s in %s%n", archive.getFileName(), archive.getParent().toUri());
+    if (home != null) System.out.printf("Home of JDK in %s%n", home.toUri());
+    return new Acquisition(archive, home);
+  }
+
+  /**
+   * Resolve and acquire the JDKs of all descriptors concurrently, sharing the browser.
+   *
+   * <p>A descriptor is either a URI or comma-separated JDK descriptor components, starting with
+   * the website: {@code oracle.com,26,latest}. The number of concurrent downloads is limited by
+   * {@code -Dconcurrency=N}, defaulting to 4. Each distinct URI is acquired only once.
+   *
+   * @return indexed outputs, the first entry also as the default outputs, and JSON arrays
+   */
+  static Map<String, String> acquireAll(List<String> descriptors, Browser browser, boolean dryRun)
+      throws Exception {
+    if (descriptors.isEmpty()) throw new Error("Usage: Download batch DESCRIPTOR...");
+    var permits = new Semaphore(computeConcurrency());
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var resolutions = new ArrayList<Future<Resolution>>();
+      for (var descriptor : descriptors) {
+        var arguments = List.of(descriptor.split(","));
+        resolutions.add(
+            executor.submit(
+                () -> Metrics.RUN.time("resolve", () -> resolve(arguments, browser))));
+      }
+      var archives = new HashMap<String, Future<Acquisition>>();
+      for (var future : resolutions) {
+        var resolution = await(future);
+        archives.computeIfAbsent(
+            resolution.uri(),
+            uri ->
+                executor.submit(
+                    () -> {
+                      permits.acquire();
+                      try {
+                        return acquire(resolution, browser, dryRun);
+                      } finally {
+                        permits.release();
+                      }
+                    }));
+      }
+      var outputs = new TreeMap<String, String>();
+      var paths = new ArrayList<String>();
+      var versions = new ArrayList<String>();
+      var homes = new ArrayList<String>();
+      for (var future : resolutions) {
+        var resolution = await(future);
+        var index = paths.size();
+        var acquisition = await(archives.get(resolution.uri()));
+        paths.add(acquisition.archive().toString());
+        versions.add(resolution.computeVersionString());
+        outputs.put("archive-" + index, paths.get(index));
+        outputs.put("version-" + index, versions.get(index));
+        if (acquisition.home() == null) continue;
+        homes.add(acquisition.home().toString());
+        outputs.put("home-" + index, homes.getLast());
+      }
+      outputs.put("archive", paths.get(0));
+      outputs.put("version", versions.get(0));
+      outputs.put("archives", GitHub.toJsonArray(paths));
+      outputs.put("versions", GitHub.toJsonArray(versions));
+      if (homes.size() == paths.size()) {
+        outputs.put("home", homes.get(0));
+        outputs.put("homes", GitHub.toJsonArray(homes));
+      }
+      return outputs;
+    }
+  }
+
+  static int computeConcurrency() {
+    var concurrency = Integer.getInteger("concurrency", 4);
+    if (concurrency < 1) throw new IllegalArgumentException("concurrency < 1: " + concurrency);
+    return concurrency;
+  }
+
+  /** Wait for the result of a future, rethrowing the original cause of its failure. */
+  static <T> T await(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException exception) {
+      if (exception.getCause() instanceof Exception cause) throw cause;
+      if (exception.getCause() instanceof Error cause) throw cause;
+      throw exception;
+    }
+  }
+
+  /** The verified archive of a JDK and, if extracted, the path to its home directory. */
+  record Acquisition(Path archive, Path home) {}
+
+  /** A JDK descriptor resolved to the URI of its archive hosted at a website. */
+  record Resolution(Website website, JDK jdk, String uri) {
+    String computeVersionString() {
+      var digit = Character.isDigit(jdk.release.charAt(0));
+      return website.computeVersionString(uri, digit ? "PARSE_URI" : "HASH_URI");
+    }
+  }
+
+  record JDK(String release, String version, String os, String arch, String type) {
+
+    static String computeOsName() {
+      var name = System.getProperty("os.name").toLowerCase();
+      if (name.contains("win")) return "windows";
+      if (name.contains("mac")) return "macos";
+      return "linux";
+    }
+
+    static String computeOsArch() {
+      var arch = System.getProperty("os.arch", "x64");
+      if (arch.equals("amd64")) return "x64";
+      if (arch.equals("x86_64")) return "x64";
+      return arch;
+    }
+
+    static String computeFileType() {
+      var name = System.getProperty("os.name").toLowerCase();
+      return name.contains("win") ? "zip" : "tar.gz";
+    }
+  }
+
+  /** Download helper. */
+  static class Downloader {
+
+    final Path archive;
+    final Path partial;
+    final String uri;
+    final Store store;
+    final Browser browser;
+    final List<String> mirrors;
+    final Hasher hasher;
+    /*lazy*/ String source;
+    /*lazy*/ String streamedChecksum;
+    /*lazy*/ boolean unmodified;
+    /*lazy*/ CompletableFuture<Optional<String>> remoteChecksum;
+    /*lazy*/ HttpHeaders headers;
+    /*lazy*/ String validator;
+    /*lazy*/ List<Segment> segments = List.of();
+    /*lazy*/ Future<Path> extraction;
+
+    Downloader(Path archive, String uri) {
+      this(archive, uri, new Browser());
+    }
+
+    Downloader(Path archive, String uri, Browser browser) {
+      this(archive, uri, browser, List.of());
+    }
+
+    Downloader(Path archive, String uri, Browser browser, List<String> mirrors) {
+      this.archive = archive;
+      var suffix = ".%016x.part".formatted(ThreadLocalRandom.current().nextLong());
+      this.partial = archive.resolveSibling(archive.getFileName() + suffix); // of this run only
+      this.uri = uri;
+      this.store = Store.of(archive);
+      this.browser = browser;
+      this.mirrors = List.copyOf(mirrors);
+      this.hasher = new Hasher();
+    }
+
+    /**
+     * Revalidate, link, download, and verify the archive, each step only if needed.
+     *
+     * <p>An archive received from a mirror that fails verification, for example one serving a stale
+     * copy of a moving resource, is downloaded and verified once more from the origin.
+     */
+    void acquireArchive(String checksum, boolean moving, boolean dryRun) throws Exception {
+      store.adoptLegacyArchive(uri, archive);
+      if (moving) Metrics.RUN.time("revalidate", () -> revalidateArchive(dryRun));
+      Metrics.RUN.time("link", () -> linkArchiveFromStore(checksum, moving));
+      var hit = Files.exists(archive) && streamedChecksum == null; // not replaced by revalidation
+      Metrics.RUN.count(hit ? "cache-hits" : "cache-misses", 1);
+      Metrics.RUN.time("download", () -> downloadArchive(dryRun));
+      try {
+        Metrics.RUN.time("verify", () -> verifyChecksums(checksum, moving));
+      } catch (AssertionError error) {
+        if (!isFromMirror()) throw error;
+        GitHub.debug("Falling back to the origin: " + uri);
+        source = uri;
+        streamedChecksum = null;
+        unmodified = false;
+        headers = null;
+        validator = null;
+        segments = List.of();
+        Metrics.RUN.time("download", () -> downloadArchive(dryRun));
+        Metrics.RUN.time("verify", () -> verifyChecksums(checksum, moving));
+      }
+    }
+
+    /** {@return whether the bytes of the archive were received from a mirror} */
+    boolean isFromMirror() {
+      return source != null && !source.equals(uri);
+    }
+
+    /**
+     * Link a missing archive to a stored archive with the same checksum, avoiding its download.
+     *
+     * <p>The checksum is taken from the metadata recorded for a non-moving resource, or else from
+     * the remote checksum that is needed for verifying the archive anyway. Its request is sent in
+     * the background, and only waited for if the store holds any archive to link to.
+     */
+    void linkArchiveFromStore(String checksum, boolean moving) throws Exception {
+      if (Files.exists(archive)) return;
+      var metadata = Metadata.load(archive);
+      var recorded = moving ? null : metadata.properties.getProperty("sha256");
+      if (recorded == null) fetchRemoteChecksum(checksum);
+      if (store.isEmpty()) return;
+      var known = recorded != null ? Optional.of(recorded) : findRemoteChecksum(checksum);
+      if (known.isEmpty() || !store.link(archive, known.get())) return;
+      GitHub.debug("Linked archive to stored archive with checksum: " + known.get());
+      metadata.properties.clear(); // validators of the resource are unknown
+      metadata.recordVerifiedChecksum(uri, known.get());
+    }
+
+    void checkSizeAndDeleteIfDifferent() throws Exception {
+      if (Files.notExists(archive)) return;
+      var cachedSize = Files.size(archive);
+      GitHub.debug("Cached size: " + cachedSize);
+      var response = browser.head(selectSource());
+      var remoteSize = response.headers().firstValueAsLong("content-length").orElse(-1);
+      GitHub.debug("Remote size: " + remoteSize);
+      if (cachedSize == remoteSize) return;
+      Files.delete(archive);
+    }
+
+    /**
+     * Revalidate the cached archive of a moving resource with a conditional request.
+     *
+     * <p>A 304 response keeps the cached archive, a 200 response replaces it with its body. If no
+     * validators were recorded for the cached archive, fall back to comparing sizes. Transient
+     * failures are retried as the retry policy allows, after which the cached archive is kept.
+     */
+    void revalidateArchive(boolean dryRun) throws Exception {
+      if (Files.notExists(archive) || dryRun) return;
+      var metadata = Metadata.load(archive);
+      var etag = metadata.properties.getProperty("etag");
+      var lastModified = metadata.properties.getProperty("last-modified");
+      if (etag == null && lastModified == null) {
+        checkSizeAndDeleteIfDifferent();
+        return;
+      }
+      var source = selectSource();
+      HttpResponse<Path> response;
+      try {
+        response =
+            RetryPolicy.of()
+                .call(
+                    source,
+                    () -> browser.downloadIfModified(source, partial, etag, lastModified, hasher));
+      } catch (IOException exception) {
+        GitHub.warn("Revalidation failed, keeping cached archive: " + exception);
+        Files.deleteIfExists(partial);
+        return;
+      }
+      GitHub.debug(response.toString());
+      if (response.statusCode() == 304) {
+        unmodified = true;
+        return;
+      }
+      streamedChecksum = hasher.checksum();
+      complete(response.headers());
+    }
+
+    /**
+     * Download the missing archive, resuming it after a failure if the server supports it.
+     *
+     * <p>No HEAD request precedes the download: the status and headers of the first response tell
+     * whether byte ranges are supported, and its {@code Content-Range} tells the size of the file
+     * to split into segments.
+     */
+    void downloadArchive(boolean dryRun) throws Exception {
+      if (Files.exists(archive)) return;
+      if (dryRun) {
+        GitHub.debug(browser.head(selectSource()).toString());
+        return;
+      }
+      var count = computeSegments();
+      deleteAbandonedFiles();
+      var transfer = Transfer.start(selectSource(), this::countDownloadedBytes);
+      try {
+        downloadWithRetries(count);
+      } finally {
+        transfer.close();
+      }
+    }
+
+    /**
+     * Delete partial files of the archive left behind by runs that were killed while downloading.
+     *
+     * <p>Each run writes its own partial file, so concurrent jobs downloading the same archive
+     * never truncate or rename each other's bytes. A partial file not written to for a while is
+     * abandoned: stalled downloads are aborted long before.
+     */
+    void deleteAbandonedFiles() throws IOException {
+      var prefix = archive.getFileName() + ".";
+      var now = System.currentTimeMillis();
+      try (var files = Files.list(archive.getParent())) {
+        for (var file : files.toList()) {
+          var name = file.getFileName().toString();
+          if (!name.startsWith(prefix) || !name.endsWith(".part")) continue;
+          try {
+            var modified = Files.getLastModifiedTime(file).toMillis();
+            if (now - modified < Store.RECENTLY_ACCESSED.toMillis()) continue;
+            Files.deleteIfExists(file);
+            GitHub.debug("Deleted abandoned partial file: " + file);
+          } catch (NoSuchFileException exception) {
+            // deleted by another run
+          }
+        }
+      } catch (NoSuchFileException exception) {
+        // nothing downloaded to this directory yet
+      }
+    }
+
+    /**
+     * Select the source of the archive's bytes, committing to it for the rest of the run.
+     *
+     * <p>Without mirrors, the source is the URI of the archive. Otherwise, the mirrors in their
+     * configured order followed by the URI itself are probed with hedged requests, see {@link
+     * Browser#findFastest}, and the first one to answer successfully is selected. The checksum is
+     * always taken from the website, and bytes of a mirror are not extracted while downloading.
+     */
+    String selectSource() throws Exception {
+      if (source != null) return source;
+      if (mirrors.isEmpty()) return source = uri;
+      var candidates = new ArrayList<>(mirrors);
+      candidates.add(uri);
+      source = browser.findFastest(candidates, computeHedgeDelay()).orElse(uri);
+      GitHub.debug("Selected source: " + source);
+      return source;
+    }
+
+    /** Delay before hedging a probe, configured via {@code -Dmirror-hedge-delay=MILLIS}. */
+    static Duration computeHedgeDelay() {
+      var millis = Long.getLong("mirror-hedge-delay", 500);
+      if (millis < 0) throw new IllegalArgumentException("mirror-hedge-delay < 0: " + millis);
+      return Duration.ofMillis(millis);
+    }
+
+    /**
+     * Download the archive, retrying failed attempts as long as the retry policy allows.
+     *
+     * <p>The time budget of the policy starts over after each attempt that wrote bytes, so that
+     * a slow transfer failing after the budget passed is still resumed.
+     */
+    void downloadWithRetries(int count) throws Exception {
+      var policy = RetryPolicy.of();
+      var source = selectSource();
+      var start = System.nanoTime();
+      for (int attempt = 1; ; attempt++) {
+        var progress = countDownloadedBytes();
+        // Bytes of a mirror are only trusted once verified, extract them after verification
+        var pipe = attempt == 1 && source.equals(uri) ? startExtraction() : null;
+        var complete = false;
+        try {
+          if (!segments.isEmpty()) {
+            GitHub.debug("Resuming download of " + source + " in " + segments.size() + " segments");
+            var responses = browser.downloadSegments(source, partial, segments, validator);
+            responses.forEach(response -> GitHub.debug(response.toString()));
+          } else if (count > 1 && headers == null) {
+            browser.downloadSegments(source, partial, hasher, info -> split(info, count));
+            if (segments.isEmpty()) streamedChecksum = hasher.checksum();
+          } else {
+            GitHub.debug("Downloading " + source);
+            var response = browser.download(source, partial, validator, hasher, this::observe);
+            GitHub.debug(response.toString());
+            streamedChecksum = hasher.checksum();
+          }
+          complete(headers);
+          complete = true;
+          return;
+        } catch (IOException exception) {
+          var message = Optional.ofNullable(exception.getMessage()).orElseGet(exception::toString);
+          if (countDownloadedBytes() > progress) start = System.nanoTime(); // budget starts over
+          var elapsed = Duration.ofNanos(System.nanoTime() - start);
+          var delay = policy.computeDelay(attempt, exception, elapsed);
+          if (delay.isEmpty()) {
+            GitHub.error("Download failed due to: " + message);
+            throw exception;
+          }
+          Metrics.RUN.count("retries", 1);
+          var millis = delay.get().toMillis();
+          GitHub.warn(String.format("Retrying in %d ms due to: %s", millis, message));
+          RetryEvent.commit(source, attempt, exception, delay.get());
+          //noinspection BusyWait
+          Thread.sleep(millis);
+        } finally {
+          if (pipe != null) {
+            hasher.sink = null;
+            pipe.finish(complete && streamedChecksum != null);
+          }
+        }
+      }
+    }
+
+    /** Extraction of archives, configured via {@code -Dextract=true}. */
+    static boolean isExtracting() {
+      return Boolean.getBoolean("extract");
+    }
+
+    /**
+     * Start extracting a {@code .tar.gz} archive from the bytes streamed into the hasher.
+     *
+     * @return the pipe to finish when the download attempt ends, or {@code null} if not extracting
+     */
+    Pipe startExtraction() throws IOException {
+      if (!isExtracting() || !archive.toString().endsWith(".tar.gz")) return null;
+      var directory = store.createTemporaryHomeDirectory("streamed-");
+      var pipe = new Pipe(64);
+      var task =
+          new FutureTask<>(
+              () -> {
+                try (pipe) {
+                  Extractor.untar(new GZIPInputStream(pipe, 1 << 16), directory);
+                  return directory;
+                } catch (Exception exception) {
+                  Extractor.deleteTree(directory);
+                  throw exception;
+                }
+              });
+      Thread.ofVirtual().name("extractor").start(task);
+      extraction = task;
+      hasher.sink = pipe::write;
+      return pipe;
+    }
+
+    /**
+     * Extract the verified archive into the home directory of its checksum in the store, unless
+     * the completion marker of that directory shows that this was done before.
+     *
+     * <p>Concurrent jobs share one extraction by locking the directory exclusively. The archive is
+     * extracted into a temporary directory, or was while being downloaded, which is then moved
+     * into place. The marker is written atomically last and records the relative path of the JDK
+     * home, so a half-extracted directory never counts as complete.
+     *
+     * @return the home directory of the extracted JDK
+     */
+    Path extractArchive() throws Exception {
+      var checksum = Metadata.load(archive).findVerifiedChecksum(uri);
+      if (checksum == null) throw new IllegalStateException("Archive not verified: " + archive);
+      var directory = store.computeHomeDirectory(checksum);
+      var streamed = extraction == null ? null : awaitExtraction();
+      var home = Store.findCompleteHome(directory);
+      if (home == null) {
+        var lock = store.lockHome(checksum);
+        try {
+          home = Store.findCompleteHome(directory);
+          if (home == null) {
+            var extracted = streamed;
+            streamed = null;
+            if (extracted == null) {
+              GitHub.debug("Extracting " + archive);
+              extracted = store.createTemporaryHomeDirectory(checksum + "-");
+              Extractor.extract(archive, extracted);
+            }
+            Extractor.deleteTree(directory); // left half-extracted by another run
+            move(extracted, directory);
+            home = Store.completeHome(directory);
+          }
+        } finally {
+          lock.close();
+        }
+      }
+      if (streamed != null) Extractor.deleteTree(streamed); // extracted by another job
+      var now = FileTime.fromMillis(System.currentTimeMillis());
+      Files.setLastModifiedTime(Store.computeMarker(directory), now); // for pruning
+      return home;
+    }
+
+    /** Wait for the extraction started while downloading, or return {@code null} if it failed. */
+    Path awaitExtraction() {
+      try {
+        var directory = await(extraction);
+        GitHub.debug("Extracted archive while downloading");
+        return directory;
+      } catch (Exception exception) {
+        GitHub.debug("Extraction while downloading failed: " + exception);
+        return null;
+      }
+    }
+
+    /** Delete the directory extracted while downloading an archive that failed to verify. */
+    void discardExtraction() throws IOException {
+      if (extraction == null) return;
+      var directory = awaitExtraction();
+      extraction = null;
+      if (directory != null) Extractor.deleteTree(directory);
+    }
+
+    /** Count the bytes written from the start of the file without gaps, while they are written. */
+    long countContiguousBytes() {
+      var segments = this.segments;
+      if (segments.isEmpty()) return hasher.length;
+      for (var segment : segments) {
+        if (!segment.isComplete()) return segment.position;
+      }
+      return segments.get(segments.size() - 1).end + 1;
+    }
+
+    /** {@return the size of the archive being downloaded, or -1 while it is unknown} */
+    long computeExpectedSize() {
+      var segments = this.segments;
+      if (!segments.isEmpty()) return segments.get(segments.size() - 1).end + 1;
+      var headers = this.headers;
+      if (headers == null) return -1;
+      var size = Browser.parseContentRangeSize(headers);
+      return size.orElseGet(() -> headers.firstValueAsLong("content-length").orElse(-1));
+    }
+
+    /** Count the bytes written by the current download attempt, while they are written. */
+    long countDownloadedBytes() {
+      var segments = this.segments;
+      if (segments.isEmpty()) return hasher.length;
+      return segments.stream().mapToLong(segment -> segment.position - segment.start).sum();
+    }
+
+    /** Record the headers of a response and the validator for resuming its body, if supported. */
+    void observe(HttpResponse.ResponseInfo info) {
+      if (!Browser.isSuccessful(info.statusCode())) return; // its body is discarded
+      headers = info.headers();
+      var ranges = headers.firstValue("accept-ranges").orElse("none");
+      var resumable = ranges.equalsIgnoreCase("bytes") || info.statusCode() == 206;
+      validator = resumable ? Browser.computeValidator(headers).orElse(null) : null;
+    }
+
+    /** Observe the response to a request for all bytes, splitting partial content in segments. */
+    List<Segment> split(HttpResponse.ResponseInfo info, int count) {
+      observe(info);
+      if (info.statusCode() != 206) return segments = List.of();
+      var size = Browser.parseContentRangeSize(headers).orElse(-1L);
+      var partial = size > 0 && validator != null;
+      return segments = partial ? Segment.split(size, count) : List.of();
+    }
+
+    /** Move the downloaded file into place and record the validators of its resource. */
+    void complete(HttpHeaders headers) throws IOException {
+      move(partial, archive);
+      Metadata.load(archive).recordValidators(headers);
+    }
+
+    /** Rename the completely downloaded file, atomically if supported by the file system. */
+    static void move(Path source, Path target) throws IOException {
+      try {
+        Files.move(source, target, ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException exception) {
+        Files.move(source, target, REPLACE_EXISTING);
+      }
+    }
+
+    /** Number of concurrent byte-range requests, configured via {@code -Ddownload-segments=N}. */
+    static int computeSegments() {
+      var segments = Integer.getInteger("download-segments", 1);
+      if (segments < 1) throw new IllegalArgumentException("download-segments < 1: " + segments);
+      return segments;
+    }
+
+    /**
+     * Verify the archive against its remote checksum, recording the result in a metadata file.
+     *
+     * <p>A checksum recorded for the unchanged archive replaces hashing its bytes again and, for
+     * a non-moving resource, also fetching the remote checksum. Pass {@code -Dparanoid=true} to
+     * always verify cached archives in full.
+     */
+    void verifyChecksums(String checksum, boolean moving) throws Exception {
+      if (Files.notExists(archive)) return;
+      var metadata = Metadata.load(archive);
+      var recorded = Boolean.getBoolean("paranoid") ? null : metadata.findVerifiedChecksum(uri);
+      if (recorded != null && (!moving || unmodified)) {
+        GitHub.debug("Verified checksum: " + recorded);
+        return;
+      }
+      var streamed = streamedChecksum != null;
+      var cached =
+          streamed ? streamedChecksum : recorded != null ? recorded : computeChecksum(archive);
+      GitHub.debug((streamed ? "Streamed" : "Cached") + " checksum: " + cached);
+
+      var remoteChecksum = findRemoteChecksum(checksum);
+      if (remoteChecksum.isEmpty()) {
+        GitHub.warn("Checksum not available for: " + uri);
+      } else {
+        var remote = remoteChecksum.get();
+        GitHub.debug("Remote checksum: " + remote);
+        if (cached.equals(remote)) {
+          metadata.recordVerifiedChecksum(uri, cached);
+          store.insert(archive, cached);
+          return;
+        }
+      }
+      var mirrored = isFromMirror();
+      var message = "Checksum verification failed, deleting cached archive";
+      if (mirrored) message += " downloaded from mirror " + source;
+      store.discard(archive, metadata.properties.getProperty("sha256"));
+      store.discard(archive, cached);
+      Files.delete(archive);
+      Files.deleteIfExists(metadata.file);
+      discardExtraction();
+      if (mirrored) GitHub.warn(message); // downloaded again from the origin
+      else GitHub.error(message);
+      throw new AssertionError(message);
+    }
+
+    Optional<String> findRemoteChecksum(String checksum) throws Exception {
+      return await(fetchRemoteChecksum(checksum));
+    }
+
+    /** Start fetching the remote checksum with a single request, unless already started. */
+    CompletableFuture<Optional<String>> fetchRemoteChecksum(String checksum) {
+      if (remoteChecksum != null) return remoteChecksum;
+      if (!checksum.matches("https?://.+")) {
+        return remoteChecksum = CompletableFuture.completedFuture(Optional.of(checksum));
+      }
+      return remoteChecksum = browser.browseAsync(checksum);
+    }
+
+    String computeChecksum(Path path) {
+      var event = new HashEvent();
+      event.begin();
+      try {
+        var checksum = new Hasher();
+        checksum.update(path);
+        event.end();
+        if (event.shouldCommit()) {
+          event.file = path.toString();
+          event.bytes = checksum.length;
+          event.commit();
+        }
+        return checksum.checksum();
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+    }
+  }
+
+  /**
+   * Content-addressed store of verified archives.
+   *
+   * <p>Archives are cached per URI at {@code ROOT/KEY/FILE}, with {@code KEY} derived from the
+   * SHA-256 checksum of the URI. Verified archives are also hard-linked to {@code
+   * ROOT/sha256/CHECKSUM.EXTENSION}, letting all URIs that resolve to the same bytes share them.
+   * Extracted archives are kept at {@code ROOT/homes/CHECKSUM}.
+   */
+  record Store(Path root) {
+    /** Entries accessed more recently are never evicted, they may be used by later steps. */
+    static final Duration RECENTLY_ACCESSED = Duration.ofHours(1);
+
+    /** Threads of this process extracting into a home directory, keyed by its lock file. */
+    static final Map<Path, Semaphore> HOME_LOCKS = new ConcurrentHashMap<>();
+
+    /** Cached archive of a URI and its metadata, located in a directory of its own. */
+    record Entry(Path directory, Path archive, String checksum, long size, long accessed) {
+      /** Entries sharing a checksum share the bytes of a stored archive. */
+      String identity() {
+        return checksum != null ? checksum : archive.toString();
+      }
+    }
+
+    static Store of() {
+      var home = System.getProperty("user.home");
+      return new Store(Path.of(home, ".oracle-actions", "setup-java"));
+    }
+
+    /** Find the store of an archive path computed by {@link #computeArchivePath(String)}. */
+    static Store of(Path archive) {
+      return new Store(archive.toAbsolutePath().getParent().getParent());
+    }
+
+    /** Test whether no verified archive is stored yet, leaving nothing to link to. */
+    boolean isEmpty() throws IOException {
+      var blobs = root.resolve("sha256");
+      if (Files.notExists(blobs)) return true;
+      try (var stream = Files.list(blobs)) {
+        return stream.findAny().isEmpty();
+      }
+    }
+
+    static String computeKey(String uri) {
+      var hasher = new Hasher();
+      hasher.update(ByteBuffer.wrap(uri.getBytes(UTF_8)));
+      return hasher.checksum().substring(0, 16);
+    }
+
+    Path computeArchivePath(String uri) {
+      var file = uri.substring(uri.lastIndexOf('/') + 1);
+      return root.resolve(computeKey(uri)).resolve(file);
+    }
+
+    /**
+     * Move the archive cached for a URI by versions before this store into its entry, if any.
+     *
+     * <p>Those versions cached an archive in a directory named after the hexadecimal hash code of
+     * its URI. The adopted archive has no recorded checksum or validators, so it is verified in
+     * full before its first use. Legacy entries that are never adopted are evicted by pruning.
+     */
+    void adoptLegacyArchive(String uri, Path archive) throws IOException {
+      var directory = root.resolve(Integer.toHexString(uri.hashCode()));
+      var legacy = directory.resolve(archive.getFileName());
+      if (Files.notExists(legacy) || Files.exists(archive)) return;
+      try {
+        Files.createDirectories(archive.getParent());
+        Downloader.move(legacy, archive);
+        GitHub.debug("Adopted legacy archive: " + legacy);
+        Files.deleteIfExists(directory);
+      } catch (NoSuchFileException exception) {
+        GitHub.debug("Legacy archive adopted by another run: " + legacy);
+      } catch (DirectoryNotEmptyException exception) {
+        GitHub.debug("Legacy directory not empty: " + directory);
+      }
+    }
+
+    Path computeBlobPath(String checksum, Path archive) {
+      var name = archive.getFileName().toString();
+      var extension = name.endsWith(".tar.gz") ? ".tar.gz" : name.endsWith(".zip") ? ".zip" : "";
+      return root.resolve("sha256").resolve(checksum + extension);
+    }
+
+    Path computeHomeDirectory(String checksum) {
+      return root.resolve("homes").resolve(checksum);
+    }
+
+    Path createTemporaryHomeDirectory(String prefix) throws IOException {
+      var homes = Files.createDirectories(root.resolve("homes"));
+      return Files.createTempDirectory(homes, prefix);
+    }
+
+    static Path computeMarker(Path directory) {
+      return directory.resolve(".complete");
+    }
+
+    /** {@return the JDK home of a completely extracted directory, or {@code null}} */
+    static Path findCompleteHome(Path directory) throws IOException {
+      var marker = computeMarker(directory);
+      if (Files.notExists(marker)) return null;
+      return directory.resolve(Files.readString(marker).strip());
+    }
+
+    /** Mark a directory as completely extracted by atomically writing its marker. */
+    static Path completeHome(Path directory) throws IOException {
+      var home = Extractor.findHome(directory);
+      var relative = directory.relativize(home).toString().replace('\\', '/');
+      var temporary = Files.createTempFile(directory, ".complete", ".tmp");
+      Files.writeString(temporary, relative.isEmpty() ? "." : relative);
+      Downloader.move(temporary, computeMarker(directory));
+      return home;
+    }
+
+    /** Lock the home directory of a checksum exclusively, waiting for other jobs to release it. */
+    Closeable lockHome(String checksum) throws IOException {
+      var file = computeHomeDirectory(checksum).resolveSibling(checksum + ".lock");
+      var permit = HOME_LOCKS.computeIfAbsent(file.toAbsolutePath(), key -> new Semaphore(1));
+      permit.acquireUninterruptibly(); // file locks are held on behalf of the whole process
+      try {
+        var lock = lock(file, false);
+        return () -> {
+          try {
+            lock.close();
+          } finally {
+            permit.release();
+          }
+        };
+      } catch (IOException | RuntimeException exception) {
+        permit.release();
+        throw exception;
+      }
+    }
+
+    /** Hard-link a verified archive into the store, unless its checksum is already stored. */
+    void insert(Path archive, String checksum) {
+      var blob = computeBlobPath(checksum, archive);
+      if (Files.exists(blob)) return;
+      try {
+        Files.createDirectories(blob.getParent());
+        Files.createLink(blob, archive);
+      } catch (IOException | UnsupportedOperationException exception) {
+        GitHub.debug("Archive not stored: " + exception);
+      }
+    }
+
+    /** Delete the stored archive of a checksum, if it is the archive that failed to verify. */
+    void discard(Path archive, String checksum) throws IOException {
+      if (checksum == null) return;
+      var blob = computeBlobPath(checksum, archive);
+      if (Files.notExists(blob) || !Files.isSameFile(blob, archive)) return;
+      Files.delete(blob);
+      GitHub.warn("Deleted corrupt stored archive: " + blob);
+    }
+
+    /** Lock the entry of an archive with a shared lock, preventing its eviction while in use. */
+    Closeable lock(Path archive) throws IOException {
+      return lock(archive.resolveSibling(".lock"), true);
+    }
+
+    /**
+     * Lock a file, creating it and its directory if needed.
+     *
+     * <p>Lock files are never deleted while the store is in use, as a run locking a deleted file
+     * would not exclude a run locking the file recreated at its path.
+     */
+    static Closeable lock(Path file, boolean shared) throws IOException {
+      var channel = (FileChannel) null;
+      while (channel == null) {
+        Files.createDirectories(file.getParent());
+        try {
+          channel = FileChannel.open(file, CREATE, READ, WRITE);
+        } catch (NoSuchFileException exception) {
+          GitHub.debug("Directory deleted while locking, creating it again: " + file);
+        }
+      }
+      try {
+        channel.lock(0, Long.MAX_VALUE, shared);
+        return channel; // closing the channel releases the lock
+      } catch (IOException | RuntimeException exception) {
+        channel.close();
+        throw exception;
+      }
+    }
+
+    /**
+     * Evict entries configured via {@code -Dcache-max-size=SIZE} and {@code -Dcache-max-age=DAYS}.
+     *
+     * <p>A size is given in bytes, optionally followed by a {@code K}, {@code M}, or {@code G}
+     * unit. Nothing is evicted if neither property is set.
+     */
+    void prune() throws IOException {
+      var size = System.getProperty("cache-max-size", "");
+      var days = System.getProperty("cache-max-age", "");
+      if (size.isBlank() && days.isBlank()) return;
+      var maxSize = size.isBlank() ? Long.MAX_VALUE : parseSize(size);
+      var maxAge = days.isBlank() ? Duration.ofDays(36500) : Duration.ofDays(Long.parseLong(days));
+      var freed = prune(maxSize, maxAge);
+      GitHub.debug("Freed %d bytes in %s".formatted(freed, root));
+    }
+
+    static long parseSize(String size) {
+      var value = size.strip().toUpperCase(Locale.ROOT);
+      var unit = "KMG".indexOf(value.charAt(value.length() - 1)) + 1;
+      if (unit == 0) return Long.parseLong(value);
+      return Long.parseLong(value.substring(0, value.length() - 1)) << (10 * unit);
+    }
+
+    /**
+     * Evict least-recently accessed entries while the store exceeds the given size, or while they
+     * are older than the given age, and delete stored archives no longer referenced by any entry.
+     *
+     * <p>Entries locked by a running download and recently accessed entries are never evicted.
+     *
+     * @return the number of bytes freed
+     */
+    long prune(long maxSize, Duration maxAge) throws IOException {
+      if (Files.notExists(root)) return 0;
+      try (var channel = FileChannel.open(root.resolve(".prune"), CREATE, WRITE);
+          var lock = channel.tryLock()) {
+        if (lock == null) {
+          GitHub.debug("Store is already being pruned: " + root);
+          return 0;
+        }
+        var entries = listEntries();
+        entries.sort(Comparator.comparingLong(Entry::accessed));
+        var references = new HashMap<String, Integer>();
+        var sizes = new HashMap<String, Long>();
+        for (var entry : entries) {
+          references.merge(entry.identity(), 1, Integer::sum);
+          sizes.put(entry.identity(), entry.size());
+        }
+        var usage = sizes.values().stream().mapToLong(Long::longValue).sum();
+        var now = System.currentTimeMillis();
+        var freed = 0L;
+        for (var entry : entries) {
+          var age = now - entry.accessed();
+          if (age < RECENTLY_ACCESSED.toMillis()) break;
+          if (usage <= maxSize && age <= maxAge.toMillis()) break;
+          if (!evict(entry)) continue;
+          if (references.merge(entry.identity(), -1, Integer::sum) > 0) continue;
+          references.remove(entry.identity());
+          usage -= entry.size();
+          freed += entry.size();
+        }
+        var blobs = root.resolve("sha256");
+        if (Files.isDirectory(blobs)) {
+          try (var stream = Files.list(blobs)) {
+            for (var blob : stream.toList()) {
+              var checksum = blob.getFileName().toString().split("\\.", 2)[0];
+              if (references.containsKey(checksum) || isShared(blob, now)) continue;
+              Files.deleteIfExists(blob);
+            }
+          }
+        }
+        var homes = root.resolve("homes");
+        if (Files.isDirectory(homes)) {
+          try (var stream = Files.list(homes)) {
+            for (var directory : stream.filter(Files::isDirectory).toList()) {
+              var name = directory.getFileName().toString();
+              if (references.containsKey(name)) continue;
+              var marker = computeMarker(directory);
+              var used = Files.getLastModifiedTime(Files.exists(marker) ? marker : directory);
+              if (now - used.toMillis() < RECENTLY_ACCESSED.toMillis()) continue;
+              deleteHome(directory);
+            }
+          }
+        }
+        return freed;
+      }
+    }
+
+    /**
+     * Test whether an entry may still link to a stored archive, for example one inserted by a
+     * concurrent run after the entries were listed. Without a count of hard links, a recently
+     * modified stored archive is considered shared.
+     */
+    static boolean isShared(Path blob, long now) throws IOException {
+      try {
+        return (int) Files.getAttribute(blob, "unix:nlink") > 1;
+      } catch (UnsupportedOperationException | IllegalArgumentException exception) {
+        var modified = Files.getLastModifiedTime(blob).toMillis();
+        return now - modified < RECENTLY_ACCESSED.toMillis();
+      }
+    }
+
+    List<Entry> listEntries() throws IOException {
+      var entries = new ArrayList<Entry>();
+      try (var directories = Files.list(root)) {
+        for (var directory : directories.filter(Files::isDirectory).toList()) {
+          var name = directory.getFileName().toString();
+          if (name.equals("sha256") || name.equals("homes")) continue;
+          try (var files = Files.list(directory)) {
+            for (var archive : files.filter(Store::isArchive).toList()) {
+              var metadata = Metadata.load(archive);
+              var uri = metadata.properties.getProperty("uri", "");
+              var checksum = metadata.findVerifiedChecksum(uri);
+              var accessed = metadata.properties.getProperty("accessed");
+              entries.add(
+                  new Entry(
+                      directory,
+                      archive,
+                      checksum,
+                      Files.size(archive),
+                      accessed != null
+                          ? Long.parseLong(accessed)
+                          : Files.getLastModifiedTime(archive).toMillis()));
+            }
+          } catch (NoSuchFileException exception) {
+            GitHub.debug("Entry deleted while listing: " + exception.getFile());
+          }
+        }
+      }
+      return entries;
+    }
+
+    static boolean isArchive(Path path) {
+      var name = path.getFileName().toString();
+      return name.endsWith(".tar.gz") || name.endsWith(".zip");
+    }
+
+    /** Delete an extracted directory whose archive is no longer stored, unless it is locked. */
+    void deleteHome(Path directory) throws IOException {
+      var file = directory.resolveSibling(directory.getFileName() + ".lock");
+      try (var channel = FileChannel.open(file, CREATE, WRITE)) {
+        var lock = channel.tryLock();
+        if (lock == null) return;
+        Extractor.deleteTree(directory);
+        GitHub.debug("Deleted " + directory);
+      } catch (OverlappingFileLockException exception) {
+        // locked by this process
+      }
+    }
+
+    /** Delete the files of an entry unless its directory is locked by a running download. */
+    boolean evict(Entry entry) throws IOException {
+      var file = entry.directory().resolve(".lock");
+      try (var channel = FileChannel.open(file, CREATE, WRITE)) {
+        var lock = channel.tryLock();
+        if (lock == null) return false;
+        try (var files = Files.list(entry.directory())) {
+          for (var path : files.toList()) {
+            if (!path.equals(file)) Extractor.deleteTree(path);
+          }
+        }
+        GitHub.debug("Evicted " + entry.archive());
+        return true;
+      } catch (OverlappingFileLockException exception) {
+        return false; // locked by this process
+      }
+    }
+
+    /** Hard-link a stored archive with the given checksum to the given archive path. */
+    boolean link(Path archive, String checksum) {
+      var blob = computeBlobPath(checksum, archive);
+      if (Files.notExists(blob)) return false;
+      try {
+        Files.createDirectories(archive.getParent());
+        Files.createLink(archive, blob);
+        return true;
+      } catch (IOException | UnsupportedOperationException exception) {
+        GitHub.debug("Archive not linked: " + exception);
+        return false;
+      }
+    }
+  }
+
+  /** Properties file stored next to a cached archive, describing its verified state. */
+  static final class Metadata {
+    final Path archive;
+    final Path file;
+    final Properties properties = new Properties();
+
+    private Metadata(Path archive) {
+      this.archive = archive;
+      this.file = archive.resolveSibling(archive.getFileName() + ".properties");
+    }
+
+    static Metadata load(Path archive) throws IOException {
+      var metadata = new Metadata(archive);
+      if (Files.exists(metadata.file)) {
+        try (var reader = Files.newBufferedReader(metadata.file)) {
+          metadata.properties.load(reader);
+        }
+      }
+      return metadata;
+    }
+
+    /** {@return the recorded checksum, or {@code null} if the archive changed since recording} */
+    String findVerifiedChecksum(String uri) throws IOException {
+      var checksum = properties.getProperty("sha256");
+      if (checksum == null || !uri.equals(properties.getProperty("uri"))) return null;
+      var size = String.valueOf(Files.size(archive));
+      var modified = String.valueOf(Files.getLastModifiedTime(archive).toMillis());
+      if (!size.equals(properties.getProperty("size"))) return null;
+      if (!modified.equals(properties.getProperty("modified"))) return null;
+      return checksum;
+    }
+
+    /** Start describing a newly downloaded archive by the validators of its resource. */
+    void recordValidators(HttpHeaders headers) throws IOException {
+      properties.clear();
+      for (var name : List.of("etag", "last-modified")) {
+        headers.firstValue(name).ifPresent(value -> properties.setProperty(name, value));
+      }
+      store();
+    }
+
+    void recordAccess() throws IOException {
+      properties.setProperty("accessed", String.valueOf(System.currentTimeMillis()));
+      store();
+    }
+
+    void recordVerifiedChecksum(String uri, String checksum) throws IOException {
+      properties.setProperty("uri", uri);
+      properties.setProperty("sha256", checksum);
+      var modified = Files.getLastModifiedTime(archive).toMillis();
+      properties.setProperty("size", String.valueOf(Files.size(archive)));
+      properties.setProperty("modified", String.valueOf(modified));
+      store();
+    }
+
+    void store() throws IOException {
+      var temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (var writer = Files.newBufferedWriter(temporary)) {
+        properties.store(writer, "Metadata of " + archive.getFileName());
+      }
+      Downloader.move(temporary, file);
+    }
+  }
+
+  /**
+   * Read-through caching proxy of the websites' archives for other runners, started via {@code
+   * serve}.
+   *
+   * <p>Runners use it as a mirror: the archive at {@code https://HOST/PATH} is served at {@code
+   * /HOST/PATH}. A missing archive is downloaded and verified into the store like any other, and
+   * concurrent requests for it share that single download. Cached archives of moving resources
+   * are revalidated once they were acquired longer than {@code -Dserve-max-age=SECONDS} ago,
+   * defaulting to 300. Single byte ranges are supported, checksum files are passed through. The
+   * server listens at {@code -Dserve-address=ADDRESS} and {@code -Dserve-port=PORT}, defaulting
+   * to all addresses and port 8080.
+   */
+  static final class Proxy implements AutoCloseable {
+    static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    static final long POLL_MILLIS = 20; // while streaming an archive being downloaded
+
+    final Store store;
+    final Browser browser;
+    final Map<String, String> origins; // host -> base URI of the upstream server
+    final Duration maxAge = Duration.ofSeconds(Integer.getInteger("serve-max-age", 300));
+    final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    final Map<String, Long> acquired = new ConcurrentHashMap<>(); // uri -> millis
+    final Map<String, Long> accessed = new ConcurrentHashMap<>(); // uri -> millis
+    final HttpServer server;
+
+    Proxy(Store store, Browser browser, Map<String, String> origins, InetSocketAddress address)
+        throws IOException {
+      this.store = store;
+      this.browser = browser;
+      this.origins = Map.copyOf(origins);
+      this.server = HttpServer.create(address, 0);
+      server.createContext("/", this::handle);
+      server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+      server.start();
+    }
+
+    /** Serve the default store until the process is terminated. */
+    static void serve() throws Exception {
+      var port = Integer.getInteger("serve-port", 8080);
+      var host = System.getProperty("serve-address", "");
+      var address =
+          host.isBlank() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+      try (var proxy = new Proxy(Store.of(), new Browser(), computeOrigins(), address)) {
+        System.out.printf("Serving %s at %s%n", proxy.store.root().toUri(), proxy.uri(""));
+        Thread.currentThread().join();
+      }
+    }
+
+    /** Map the hosts of all websites to their upstream servers. */
+    static Map<String, String> computeOrigins() {
+      var origins = new TreeMap<String, String>();
+      for (var prefix : List.of(OracleComWebsite.URI_PREFIX, JavaNetWebsite.URI_PREFIX)) {
+        var host = URI.create(prefix).getHost();
+        origins.put(host, "https://" + host);
+      }
+      return origins;
+    }
+
+    String uri(String path) {
+      var address = server.getAddress();
+      return "http://" + address.getHostString() + ":" + address.getPort() + path;
+    }
+
+    /** Map a path of this server to the URI of an upstream server, unless it is not proxied. */
+    Optional<String> computeUpstreamUri(String path) {
+      if (!path.startsWith("/") || !URI.create(path).normalize().getRawPath().equals(path)) {
+        return Optional.empty();
+      }
+      var slash = path.indexOf('/', 1);
+      if (slash < 0) return Optional.empty();
+      var origin = origins.get(path.substring(1, slash));
+      return Optional.ofNullable(origin).map(base -> base + path.substring(slash));
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+      try (exchange) {
+        try {
+          respond(exchange);
+        } catch (Exception | Error throwable) {
+          GitHub.warn("Serving %s failed: %s".formatted(exchange.getRequestURI(), throwable));
+          if (exchange.getResponseCode() < 0) exchange.sendResponseHeaders(502, -1);
+        }
+        var request = exchange.getRequestMethod() + " " + exchange.getRequestURI();
+        GitHub.debug(request + " " + exchange.getResponseCode());
+      }
+    }
+
+    void respond(HttpExchange exchange) throws Exception {
+      var method = exchange.getRequestMethod();
+      var uri = computeUpstreamUri(exchange.getRequestURI().getRawPath()).orElse("");
+      if (!method.equals("GET") && !method.equals("HEAD")) {
+        exchange.sendResponseHeaders(405, -1);
+      } else if (uri.endsWith(".sha256")) {
+        passChecksum(exchange, uri);
+      } else if (uri.endsWith(".tar.gz") || uri.endsWith(".zip")) {
+        serveArchive(exchange, uri);
+      } else {
+        exchange.sendResponseHeaders(404, -1);
+      }
+    }
+
+    /** Relay the checksum file of an upstream server, it is small and the source of truth. */
+    void passChecksum(HttpExchange exchange, String uri) throws Exception {
+      var request = browser.newRequest(uri).build();
+      var response = browser.send(request, HttpResponse.BodyHandlers.ofByteArray());
+      var status = response.statusCode();
+      if (status != 200) {
+        exchange.sendResponseHeaders(status == 404 ? 404 : 502, -1);
+        return;
+      }
+      var bytes = response.body();
+      exchange.getResponseHeaders().set("Content-Type", "text/plain");
+      exchange.getResponseHeaders().set("Content-Length", String.valueOf(bytes.length));
+      var head = exchange.getRequestMethod().equals("HEAD");
+      exchange.sendResponseHeaders(200, head || bytes.length == 0 ? -1 : bytes.length);
+      if (!head) exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Serve the whole verified archive, or a single byte range of it.
+     *
+     * <p>Requests never wait for an archive to be downloaded before their response starts, as
+     * runners probing mirrors would give up on this server after their hedge delay and download
+     * from the origin themselves. Until the archive is acquired, a HEAD request is answered from
+     * the upstream server, and the bytes of a GET request are streamed while they arrive.
+     */
+    void serveArchive(HttpExchange exchange, String uri) throws Exception {
+      var archive = store.computeArchivePath(uri);
+      if (isFresh(uri, archive)) {
+        recordAccess(uri, archive);
+      } else {
+        var flight = start(uri, archive);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+          passHead(exchange, uri);
+          return;
+        }
+        if (stream(exchange, flight)) return;
+        archive = await(flight.result());
+      }
+      var etag = '"' + Metadata.load(archive).properties.getProperty("sha256") + '"';
+      try (var channel = FileChannel.open(archive, READ)) {
+        var size = channel.size();
+        var start = 0L;
+        var end = size - 1;
+        var status = 200;
+        var headers = exchange.getResponseHeaders();
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("Content-Type", "application/octet-stream");
+        headers.set("ETag", etag);
+        var range = exchange.getRequestHeaders().getFirst("Range");
+        var condition = exchange.getRequestHeaders().getFirst("If-Range");
+        var matcher = RANGE.matcher(range == null ? "" : range.strip());
+        var ranged = matcher.matches() && !matcher.group(1).concat(matcher.group(2)).isEmpty();
+        if (ranged && (condition == null || condition.equals(etag))) {
+          if (matcher.group(1).isEmpty()) {
+            start = Math.max(0, size - Long.parseLong(matcher.group(2))); // suffix
+          } else {
+            start = Long.parseLong(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) end = Math.min(end, Long.parseLong(matcher.group(2)));
+          }
+          if (start > end) {
+            headers.set("Content-Range", "bytes */" + size);
+            exchange.sendResponseHeaders(416, -1);
+            return;
+          }
+          status = 206;
+          headers.set("Content-Range", "bytes %d-%d/%d".formatted(start, end, size));
+        }
+        var length = end - start + 1;
+        headers.set("Content-Length", String.valueOf(length));
+        var head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head || length == 0 ? -1 : length);
+        if (head) return;
+        var output = Channels.newChannel(exchange.getResponseBody());
+        for (var position = start; position <= end; ) {
+          position += channel.transferTo(position, end + 1 - position, output);
+        }
+      }
+    }
+
+    /** Answer a HEAD request for an archive not acquired yet with the upstream server's answer. */
+    void passHead(HttpExchange exchange, String uri) throws Exception {
+      var response = browser.head(uri);
+      var status = response.statusCode();
+      if (status != 200) {
+        exchange.sendResponseHeaders(status == 404 ? 404 : 502, -1);
+        return;
+      }
+      var headers = exchange.getResponseHeaders();
+      headers.set("Content-Type", "application/octet-stream");
+      var length = response.headers().firstValue("content-length");
+      length.ifPresent(value -> headers.set("Content-Length", value));
+      exchange.sendResponseHeaders(200, -1);
+    }
+
+    /**
+     * Stream the archive of a flight to the client while it is being downloaded.
+     *
+     * <p>Bytes are sent as soon as they are written without gaps before them, but the last one
+     * only once the archive is verified: if verification fails, the connection is closed short of
+     * the announced length and the client never receives a complete corrupt archive.
+     *
+     * @return {@code false} if the flight completed before its download started, for example by
+     *     linking a stored archive, or if the size of the archive is unknown until it completes
+     */
+    boolean stream(HttpExchange exchange, Flight flight) throws Exception {
+      var channel = openPartialFile(flight);
+      if (channel == null) return false;
+      var downloader = flight.downloader();
+      var result = flight.result();
+      var size = downloader.computeExpectedSize();
+      try (channel) {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/octet-stream");
+        headers.set("Content-Length", String.valueOf(size));
+        exchange.sendResponseHeaders(200, size);
+        var output = Channels.newChannel(exchange.getResponseBody());
+        for (var position = 0L; position < size; ) {
+          var done = result.isDone();
+          if (done) await(result); // throws if the archive failed verification
+          var written = done ? size : Math.min(downloader.countContiguousBytes(), size - 1);
+          var available = Math.min(written, channel.size());
+          if (position < available) {
+            position += channel.transferTo(position, available - position, output);
+          } else {
+            //noinspection BusyWait
+            Thread.sleep(POLL_MILLIS);
+          }
+        }
+      }
+      return true;
+    }
+
+    /** Wait for the download of a flight to start and open its partial file, unless it ends. */
+    static FileChannel openPartialFile(Flight flight) throws Exception {
+      var downloader = flight.downloader();
+      while (!flight.result().isDone()) {
+        if (downloader.computeExpectedSize() > 0 && downloader.countContiguousBytes() > 0) {
+          try {
+            return FileChannel.open(downloader.partial, READ);
+          } catch (NoSuchFileException exception) {
+            // moved into place, the flight completes next
+          }
+        }
+        //noinspection BusyWait
+        Thread.sleep(POLL_MILLIS);
+      }
+      return null;
+    }
+
+    /** A download of an archive in progress, shared by all concurrent requests for it. */
+    record Flight(Downloader downloader, CompletableFuture<Path> result) {}
+
+    /**
+     * Start acquiring a verified archive in the background, unless a concurrent request started
+     * it, so that it is downloaded only once for all concurrent requests.
+     */
+    Flight start(String uri, Path archive) {
+      var flight = new Flight(new Downloader(archive, uri, browser), new CompletableFuture<>());
+      var pending = flights.putIfAbsent(uri, flight);
+      if (pending != null) return pending;
+      Thread.ofVirtual()
+          .name("acquire")
+          .start(
+              () -> {
+                try {
+                  flight.result().complete(fetch(uri, flight.downloader()));
+                } catch (Throwable throwable) {
+                  GitHub.debug("Acquiring %s failed: %s".formatted(uri, throwable));
+                  flight.result().completeExceptionally(throwable);
+                } finally {
+                  flights.remove(uri, flight);
+                }
+              });
+      return flight;
+    }
+
+    boolean isFresh(String uri, Path archive) throws IOException {
+      if (Files.notExists(archive)) return false;
+      if (Metadata.load(archive).findVerifiedChecksum(uri) == null) return false;
+      var moving = Website.find(uri, browser).map(site -> site.isMovingResourceUri(uri));
+      if (!moving.orElse(false)) return true;
+      var age = System.currentTimeMillis() - acquired.getOrDefault(uri, 0L);
+      return age < maxAge.toMillis();
+    }
+
+    Path fetch(String uri, Downloader downloader) throws Exception {
+      var archive = downloader.archive;
+      var website = Website.find(uri, browser);
+      var moving = website.map(site -> site.isMovingResourceUri(uri)).orElse(false);
+      var checksum = website.map(site -> site.getChecksum(uri)).orElse(uri + ".sha256");
+      var lock = store.lock(archive);
+      try {
+        GitHub.debug("Acquiring " + uri);
+        downloader.acquireArchive(checksum, moving, false);
+        acquired.put(uri, System.currentTimeMillis());
+        recordAccess(uri, archive);
+      } finally {
+        lock.close();
+      }
+      return archive;
+    }
+
+    /** Record accesses of a cached archive for pruning, at most once per recent-access period. */
+    void recordAccess(String uri, Path archive) throws IOException {
+      var now = System.currentTimeMillis();
+      var period = Store.RECENTLY_ACCESSED.toMillis();
+      var recorded = accessed.merge(uri, now, (last, next) -> next - last < period ? last : next);
+      if (recorded != now) return;
+      Metadata.load(archive).recordAccess();
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+    }
+  }
+
+  /** SHA-256 checksum computed incrementally from the bytes written to a file. */
+  static final class Hasher {
+    final MessageDigest md;
+    volatile long length; // also read by progress monitors
+    /*lazy*/ Consumer<ByteBuffer> sink; // also receives the streamed bytes, if set
+
+    Hasher() {
+      try {
+        this.md = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException exception) {
+        var algorithms = Security.getAlgorithms("MessageDigest");
+        throw new IllegalArgumentException(exception + ": " + algorithms);
+      }
+    }
+
+    void update(ByteBuffer buffer) {
+      if (sink != null) sink.accept(buffer.duplicate());
+      length += buffer.remaining();
+      md.update(buffer);
+    }
+
+    void update(Path path) throws IOException {
+      try (var input = new BufferedInputStream(new FileInputStream(path.toFile()));
+          var output = new DigestOutputStream(OutputStream.nullOutputStream(), md)) {
+        length += input.transferTo(output);
+      }
+    }
+
+    /** Ensure the checksum covers exactly the bytes of a partial file about to be appended. */
+    void resume(Path file, long offset) throws IOException {
+      if (length == offset) return;
+      reset();
+      if (offset > 0) update(file);
+    }
+
+    void reset() {
+      md.reset();
+      length = 0;
+    }
+
+    /** Complete the computation and return the checksum as a hexadecimal string. */
+    String checksum() {
+      var length = md.getDigestLength() * 2;
+      return String.format("%0" + length + "x", new BigInteger(1, md.digest()));
+    }
+  }
+
+  /** Bounded hand-over of streamed buffers to a thread reading them as an input stream. */
+  static final class Pipe extends InputStream {
+    static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    final BlockingQueue<ByteBuffer> queue;
+    ByteBuffer current = ByteBuffer.allocate(0);
+    volatile boolean closed; // by the reader, no more buffers are handed over
+    volatile boolean failed; // by the writer, reading the end throws
+
+    Pipe(int capacity) {
+      this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /** Hand over a copy of the buffer, waiting while the reader is a full queue behind. */
+    void write(ByteBuffer buffer) {
+      var copy = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+      offer(copy);
+    }
+
+    /** Signal the end of the stream, which is either complete or failed. */
+    void finish(boolean complete) {
+      failed = !complete;
+      offer(END);
+    }
+
+    private void offer(ByteBuffer buffer) {
+      try {
+        while (!closed && !queue.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+          Thread.onSpinWait();
+        }
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      var bytes = new byte[1];
+      return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) return 0;
+      while (!current.hasRemaining()) {
+        if (current == END) {
+          if (failed) throw new IOException("Streamed download failed");
+          return -1;
+        }
+        try {
+          current = queue.take();
+        } catch (InterruptedException exception) {
+          throw new InterruptedIOException();
+        }
+      }
+      var count = Math.min(length, current.remaining());
+      current.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      queue.clear();
+    }
+  }
+
+  /**
+   * Extractor of JDK archives into a directory.
+   *
+   * <p>A {@code .tar.gz} archive is read as a stream, which allows extracting it while it is
+   * downloaded. Supported tar entries are regular files, directories, symbolic and hard links,
+   * with GNU long names and PAX extended headers; their permissions and modification times are
+   * kept where the file system supports them. Links are created after all other entries, and only
+   * if they point to a relative path within the directory, so no entry is ever written through a
+   * link to a file outside of it.
+   *
+   * <p>A {@code .zip} archive is read via its central directory, which allows inflating its entries
+   * independently of each other.
+   */
+  static final class Extractor {
+    /** Options for writing an entry, never following a symbolic link at its path. */
+    static final OpenOption[] WRITING = {
+      CREATE, WRITE, TRUNCATE_EXISTING, LinkOption.NOFOLLOW_LINKS
+    };
+
+    static void extract(Path archive, Path directory) throws IOException {
+      if (archive.getFileName().toString().endsWith(".zip")) {
+        unzip(archive, directory);
+        return;
+      }
+      try (var input = new BufferedInputStream(Files.newInputStream(archive), 1 << 16)) {
+        untar(new GZIPInputStream(input, 1 << 16), directory);
+      }
+    }
+
+    /**
+     * Extract a zip archive by splitting its entries across the workers of a fork-join pool.
+     *
+     * <p>The central directory is read once, then each worker inflates its entries from
+     * positional reads of a shared file channel.
+     */
+    static void unzip(Path archive, Path directory) throws IOException {
+      var root = directory.toAbsolutePath().normalize();
+      Files.createDirectories(root);
+      var posix = Files.getFileStore(root).supportsFileAttributeView("posix");
+      try (var channel = FileChannel.open(archive, READ)) {
+        var entries = ZipRecord.readCentralDirectory(channel);
+        var files = new ArrayList<ZipRecord>();
+        var links = new ArrayList<ZipRecord>();
+        for (var entry : entries) {
+          var target = resolve(root, entry.name());
+          Files.createDirectories(entry.isDirectory() ? target : target.getParent());
+          if (entry.isDirectory()) continue;
+          (entry.isSymbolicLink() ? links : files).add(entry);
+        }
+        try (var pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors())) {
+          pool.invoke(new UnzipTask(channel, root, files, posix));
+        } catch (UncheckedIOException exception) {
+          throw exception.getCause();
+        }
+        for (var entry : links) unzip(channel, root, entry, posix); // nothing is written after
+        for (var entry : entries.reversed()) {
+          if (!entry.isDirectory()) continue;
+          var target = resolve(root, entry.name());
+          Files.setLastModifiedTime(target, FileTime.fromMillis(entry.modified()));
+          if (posix && entry.mode() != 0) {
+            Files.setPosixFilePermissions(target, toPermissions(entry.mode()));
+          }
+        }
+      }
+    }
+
+    static void unzip(FileChannel channel, Path root, ZipRecord entry, boolean posix)
+        throws IOException {
+      var target = resolve(root, entry.name());
+      var local = ZipRecord.read(channel, entry.offset(), 30);
+      if (local.getInt(0) != 0x04034b50) throw new IOException("No local header: " + entry);
+      var names = (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+      var position = entry.offset() + 30 + names;
+      if (entry.isSymbolicLink()) {
+        var link = new ByteArrayOutputStream();
+        inflate(channel, position, entry, link);
+        var path = checkLink(root, target, link.toString(UTF_8));
+        Files.deleteIfExists(target);
+        Files.createSymbolicLink(target, path);
+        return;
+      }
+      try (var output = Files.newOutputStream(target, WRITING)) {
+        inflate(channel, position, entry, output);
+      }
+      Files.setLastModifiedTime(target, FileTime.fromMillis(entry.modified()));
+      if (posix && entry.mode() != 0) {
+        Files.setPosixFilePermissions(target, toPermissions(entry.mode()));
+      }
+    }
+
+    /** Inflate or copy the data of an entry starting at the given position, checking its CRC. */
+    static void inflate(FileChannel channel, long position, ZipRecord entry, OutputStream output)
+        throws IOException {
+      var end = position + entry.compressedSize();
+      var input = ByteBuffer.allocate(Math.clamp(entry.compressedSize(), 1, 1 << 16));
+      var crc = new CRC32();
+      switch (entry.method()) {
+        case 0 -> { // stored
+          while (position < end) {
+            var count = read(channel, input, position, end, entry);
+            position += count;
+            crc.update(input.array(), 0, count);
+            output.write(input.array(), 0, count);
+          }
+        }
+        case 8 -> { // deflated
+          var buffer = new byte[1 << 16];
+          var inflater = new Inflater(true);
+          try {
+            while (!inflater.finished()) {
+              if (inflater.needsInput()) {
+                var count = read(channel, input, position, end, entry);
+                position += count;
+                inflater.setInput(input.array(), 0, count);
+              }
+              var count = inflater.inflate(buffer);
+              crc.update(buffer, 0, count);
+              output.write(buffer, 0, count);
+            }
+          } catch (DataFormatException exception) {
+            throw new IOException("Invalid compressed data: " + entry, exception);
+          } finally {
+            inflater.end();
+          }
+        }
+        default -> throw new IOException("Unsupported compression method: " + entry);
+      }
+      if (crc.getValue() != entry.crc()) throw new IOException("CRC mismatch: " + entry);
+    }
+
+    /** Read the next chunk of an entry's data at a position before its end into the buffer. */
+    static int read(
+        FileChannel channel, ByteBuffer buffer, long position, long end, ZipRecord entry)
+        throws IOException {
+      if (position >= end) throw new IOException("Truncated entry: " + entry);
+      buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+      var count = channel.read(buffer, position);
+      if (count < 0) throw new IOException("Unexpected end of archive: " + entry);
+      return count;
+    }
+
+    static void untar(InputStream input, Path directory) throws IOException {
+      var root = directory.toAbsolutePath().normalize();
+      Files.createDirectories(root);
+      var posix = Files.getFileStore(root).supportsFileAttributeView("posix");
+      var directories = new ArrayList<Map.Entry<Path, byte[]>>();
+      var links = new ArrayList<String[]>(); // type, name, and link of deferred entries
+      var header = new byte[512];
+      var extended = new HashMap<String, String>();
+      while (input.readNBytes(header, 0, 512) == 512 && header[0] != 0) {
+        var type = (char) header[156];
+        var size = parseNumber(header, 124, 12);
+        switch (type) {
+          case 'L' -> extended.put("path", readString(input, size));
+          case 'K' -> extended.put("linkpath", readString(input, size));
+          case 'x' -> extended.putAll(parseExtendedHeader(readString(input, size)));
+          case 'g' -> skip(input, size);
+          default -> {
+            var name = extended.getOrDefault("path", parseName(header));
+            var link = extended.getOrDefault("linkpath", parseString(header, 157, 100));
+            size = Long.parseLong(extended.getOrDefault("size", String.valueOf(size)));
+            extended.clear();
+            var target = resolve(root, name);
+            switch (type) {
+              case '5' -> {
+                Files.createDirectories(target);
+                directories.add(Map.entry(target, header.clone()));
+              }
+              case '1', '2' -> {
+                Files.createDirectories(target.getParent());
+                links.add(new String[] {String.valueOf(type), name, link});
+              }
+              case '0', '7', '\0' -> {
+                Files.createDirectories(target.getParent());
+                try (var output = Files.newOutputStream(target, WRITING)) {
+                  copy(input, output, size);
+                }
+                pad(input, size);
+                applyAttributes(target, header, posix);
+                continue;
+              }
+              default -> GitHub.debug("Skipped tar entry of type " + type + ": " + name);
+            }
+            skip(input, size);
+          }
+        }
+      }
+      for (var entry : directories.reversed()) {
+        applyAttributes(entry.getKey(), entry.getValue(), posix); // children first
+      }
+      for (var entry : links) { // after all files, nothing is written through a link
+        var target = resolve(root, entry[1]);
+        var hard = entry[0].equals("1");
+        var link = hard ? resolve(root, entry[2]) : checkLink(root, target, entry[2]);
+        Files.deleteIfExists(target);
+        if (hard) Files.createLink(target, link);
+        else Files.createSymbolicLink(target, link);
+      }
+    }
+
+    /** Find the home directory of an extracted JDK, descending into its single root directory. */
+    static Path findHome(Path directory) throws IOException {
+      var home = directory;
+      try (var files = Files.list(directory)) {
+        var list = files.toList();
+        if (list.size() == 1 && Files.isDirectory(list.get(0))) home = list.get(0);
+      }
+      var contents = home.resolve("Contents").resolve("Home"); // macOS bundle
+      return Files.isDirectory(contents) ? contents : home;
+    }
+
+    static void deleteTree(Path path) throws IOException {
+      if (Files.notExists(path, LinkOption.NOFOLLOW_LINKS)) return;
+      try (var paths = Files.walk(path)) {
+        for (var each : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(each);
+      }
+    }
+
+    /** Resolve the name of an entry, neither leaving the root nor passing a symbolic link. */
+    static Path resolve(Path root, String name) throws IOException {
+      var target = root.resolve(name).normalize();
+      if (!target.startsWith(root)) throw new IOException("Entry outside of directory: " + name);
+      for (var parent = target.getParent(); !root.equals(parent); parent = parent.getParent()) {
+        if (Files.isSymbolicLink(parent)) throw new IOException("Entry behind link: " + name);
+      }
+      return target;
+    }
+
+    /**
+     * Check that the target of a symbolic link is a relative path within the root.
+     *
+     * <p>The target is resolved lexically, which is only sound for parent references at its start:
+     * they leave the directories of the link, which are never links themselves. In {@code a/../b},
+     * the parent reference leaves the real directory of {@code a}, which escapes the root if
+     * {@code a} is a link to {@code ..} or a chain of links, so such targets are rejected. Names
+     * descending through links checked alike never leave the root.
+     */
+    static Path checkLink(Path root, Path path, String target) throws IOException {
+      var link = Path.of(target);
+      var resolved = path.getParent().resolve(link).normalize();
+      if (target.startsWith("/") || link.isAbsolute() || !resolved.startsWith(root)) {
+        throw new IOException("Link outside of directory: " + path + " -> " + target);
+      }
+      var named = false;
+      for (var name : link) {
+        var parent = name.toString().equals("..");
+        if (parent && named) throw new IOException("Link via parent: " + path + " -> " + target);
+        named |= !parent && !name.toString().equals(".");
+      }
+      return link;
+    }
+
+    static void applyAttributes(Path target, byte[] header, boolean posix) throws IOException {
+      var modified = parseNumber(header, 136, 12);
+      Files.setLastModifiedTime(target, FileTime.from(modified, TimeUnit.SECONDS));
+      if (!posix) return;
+      Files.setPosixFilePermissions(target, toPermissions(parseNumber(header, 100, 8)));
+    }
+
+    static Set<PosixFilePermission> toPermissions(long mode) {
+      var permissions = EnumSet.noneOf(PosixFilePermission.class);
+      var values = PosixFilePermission.values(); // OWNER_READ ... OTHERS_EXECUTE
+      for (int i = 0; i < values.length; i++) {
+        if ((mode & (1 << (values.length - 1 - i))) != 0) permissions.add(values[i]);
+      }
+      return permissions;
+    }
+
+    static String parseName(byte[] header) {
+      var name = parseString(header, 0, 100);
+      var ustar = parseString(header, 257, 6).equals("ustar");
+      var prefix = ustar ? parseString(header, 345, 155) : "";
+      return prefix.isEmpty() ? name : prefix + '/' + name;
+    }
+
+    static String parseString(byte[] header, int offset, int length) {
+      var end = offset;
+      while (end < offset + length && header[end] != 0) end++;
+      return new String(header, offset, end - offset, UTF_8);
+    }
+
+    /** Parse an octal number, or a base-256 number if the high bit of its first byte is set. */
+    static long parseNumber(byte[] header, int offset, int length) {
+      if ((header[offset] & 0x80) != 0) {
+        long value = header[offset] & 0x7F;
+        for (int i = 1; i < length; i++) value = (value << 8) | (header[offset + i] & 0xFF);
+        return value;
+      }
+      var string = parseString(header, offset, length).trim();
+      return string.isEmpty() ? 0 : Long.parseLong(string, 8);
+    }
+
+    /** Parse PAX records of the form {@code "LENGTH KEY=VALUE\n"}. */
+    static Map<String, String> parseExtendedHeader(String records) {
+      var map = new HashMap<String, String>();
+      var bytes = records.getBytes(UTF_8);
+      int position = 0;
+      while (position < bytes.length) {
+        var space = position;
+        while (space < bytes.length && bytes[space] != ' ') space++;
+        if (space == bytes.length) break;
+        var length = Integer.parseInt(new String(bytes, position, space - position, UTF_8));
+        var record = new String(bytes, space + 1, length - (space - position) - 2, UTF_8);
+        var equals = record.indexOf('=');
+        map.put(record.substring(0, equals), record.substring(equals + 1));
+        position += length;
+      }
+      return map;
+    }
+
+    static String readString(InputStream input, long size) throws IOException {
+      var bytes = input.readNBytes((int) size);
+      pad(input, size);
+      return parseString(bytes, 0, bytes.length);
+    }
+
+    static void copy(InputStream input, OutputStream output, long size) throws IOException {
+      var buffer = new byte[1 << 16];
+      for (long remaining = size; remaining > 0; ) {
+        var count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (count < 0) throw new IOException("Unexpected end of tar entry");
+        output.write(buffer, 0, count);
+        remaining -= count;
+      }
+    }
+
+    /** Skip the bytes of an entry of the given size, including its padding. */
+    static void skip(InputStream input, long size) throws IOException {
+      input.skipNBytes(size);
+      pad(input, size);
+    }
+
+    /** Skip the padding of an already read entry of the given size up to the next block. */
+    static void pad(InputStream input, long size) throws IOException {
+      input.skipNBytes((512 - size % 512) % 512);
+    }
+  }
+
+  /** An entry of the central directory of a zip archive. */
+  record ZipRecord(
+      String name,
+      int method,
+      long crc,
+      long compressedSize,
+      long size,
+      long offset,
+      long modified,
+      int mode) {
+
+    boolean isDirectory() {
+      return name.endsWith("/");
+    }
+
+    boolean isSymbolicLink() {
+      return (mode & 0170000) == 0120000;
+    }
+
+    /** Read all entries of the central directory, located via its end record at the end. */
+    static List<ZipRecord> readCentralDirectory(FileChannel channel) throws IOException {
+      var size = channel.size();
+      var tail = read(channel, Math.max(0, size - 22 - 0xFFFF), (int) Math.min(size, 22 + 0xFFFF));
+      var end = tail.limit() - 22;
+      while (end >= 0 && tail.getInt(end) != 0x06054b50) end--;
+      if (end < 0) throw new IOException("No end of central directory found");
+      long count = tail.getShort(end + 10) & 0xFFFF;
+      long length = tail.getInt(end + 12) & 0xFFFFFFFFL;
+      long offset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+      if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+        if (end < 20 || tail.getInt(end - 20) != 0x07064b50) throw new IOException("No ZIP64 end");
+        var zip64 = read(channel, tail.getLong(end - 20 + 8), 56);
+        count = zip64.getLong(32);
+        length = zip64.getLong(40);
+        offset = zip64.getLong(48);
+      }
+      var directory = read(channel, offset, Math.toIntExact(length));
+      var entries = new ArrayList<ZipRecord>();
+      for (int position = 0; entries.size() < count; ) {
+        if (directory.getInt(position) != 0x02014b50) {
+          throw new IOException("Bad central directory at " + (offset + position));
+        }
+        var entry = parse(directory, position);
+        var flags = directory.getShort(position + 8);
+        if ((flags & 1) != 0) throw new IOException("Encrypted entry: " + entry);
+        entries.add(entry);
+        position +=
+            46
+                + (directory.getShort(position + 28) & 0xFFFF)
+                + (directory.getShort(position + 30) & 0xFFFF)
+                + (directory.getShort(position + 32) & 0xFFFF);
+      }
+      return List.copyOf(entries);
+    }
+
+    static ZipRecord parse(ByteBuffer directory, int position) {
+      var names = directory.getShort(position + 28) & 0xFFFF;
+      var extras = directory.getShort(position + 30) & 0xFFFF;
+      var bytes = new byte[names];
+      directory.get(position + 46, bytes);
+      long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+      long size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+      long offset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+      for (int extra = position + 46 + names; extra < position + 46 + names + extras; ) {
+        var id = directory.getShort(extra) & 0xFFFF;
+        var data = directory.getShort(extra + 2) & 0xFFFF;
+        if (id == 0x0001) { // ZIP64 extended information, only present for overflown values
+          var field = extra + 4;
+          if (size == 0xFFFFFFFFL) {
+            size = directory.getLong(field);
+            field += 8;
+          }
+          if (compressedSize == 0xFFFFFFFFL) {
+            compressedSize = directory.getLong(field);
+            field += 8;
+          }
+          if (offset == 0xFFFFFFFFL) offset = directory.getLong(field);
+        }
+        extra += 4 + data;
+      }
+      var unix = (directory.getShort(position + 4) & 0xFF00) == 0x0300;
+      return new ZipRecord(
+          new String(bytes, UTF_8),
+          directory.getShort(position + 10) & 0xFFFF,
+          directory.getInt(position + 16) & 0xFFFFFFFFL,
+          compressedSize,
+          size,
+          offset,
+          toMillis(directory.getShort(position + 14), directory.getShort(position + 12)),
+          unix ? directory.getInt(position + 38) >>> 16 : 0);
+    }
+
+    /** Convert an MS-DOS date and time in local time to milliseconds since the epoch. */
+    static long toMillis(short date, short time) {
+      var dateTime =
+          LocalDateTime.of(
+              ((date >> 9) & 0x7F) + 1980,
+              Math.clamp((date >> 5) & 0x0F, 1, 12),
+              Math.clamp(date & 0x1F, 1, 31),
+              Math.min((time >> 11) & 0x1F, 23),
+              Math.min((time >> 5) & 0x3F, 59),
+              Math.min((time & 0x1F) * 2, 59));
+      return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** Read the given number of bytes at a position of the channel into a little-endian buffer. */
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+      var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of archive at " + position);
+        }
+      }
+      return buffer.flip();
+    }
+  }
+
+  /** Fork-join task extracting zip entries, split in halves while they hold enough work. */
+  static final class UnzipTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    static final long THRESHOLD = 1 << 20; // compressed bytes
+
+    final transient FileChannel channel;
+    final transient Path root;
+    final transient List<ZipRecord> entries;
+    final boolean posix;
+
+    UnzipTask(FileChannel channel, Path root, List<ZipRecord> entries, boolean posix) {
+      this.channel = channel;
+      this.root = root;
+      this.entries = entries;
+      this.posix = posix;
+    }
+
+    @Override
+    protected void compute() {
+      var bytes = entries.stream().mapToLong(ZipRecord::compressedSize).sum();
+      if (entries.size() > 1 && bytes > THRESHOLD) {
+        var middle = entries.size() / 2;
+        invokeAll(
+            new UnzipTask(channel, root, entries.subList(0, middle), posix),
+            new UnzipTask(channel, root, entries.subList(middle, entries.size()), posix));
+        return;
+      }
+      for (var entry : entries) {
+        try {
+          Extractor.unzip(channel, root, entry, posix);
+        } catch (IOException exception) {
+          throw new UncheckedIOException(exception);
+        }
+      }
+    }
+  }
+
+  /**
+   * GitHub Actions helper.
+   *
+   * @see <a
+   *     href="https://docs.github.com/en/actions/learn-github-actions/workflow-commands-for-github-actions">Workflow
+   *     commands for GitHub Actions</a>
+   */
+  static class GitHub {
+    /** Sets an action's output parameter. */
+    static void setOutput(String name, Object value) {
+      if (name.isBlank() || value.toString().isBlank()) { // implicit null checks included
+        throw new IllegalArgumentException("name or value are blank: " + name + "=" + value);
+      }
+      var githubOutput = System.getenv("GITHUB_OUTPUT");
+      if (githubOutput == null) {
+        throw new AssertionError("No such environment variable: GITHUB_OUTPUT");
+      }
+      try {
+        var file = Path.of(githubOutput);
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        var lines = (name + "=" + value).lines().toList();
+        if (lines.size() != 1) {
+          throw new UnsupportedOperationException("Multiline strings are no supported");
+        }
+        debug("Write output %s to %s".formatted(lines, file));
+        Files.write(file, lines, UTF_8, CREATE, APPEND, WRITE);
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }  
+    }
+
+    /** Appends Markdown to the summary of the job, if running in a workflow. */
+    static void appendSummary(String markdown) throws IOException {
+      var summary = System.getenv("GITHUB_STEP_SUMMARY");
+      if (summary == null) return;
+      Files.writeString(Path.of(summary), markdown + "\n", UTF_8, CREATE, APPEND, WRITE);
+    }
+
+    /** Encode strings as a single-line JSON array, usable via {@code fromJSON()} in workflows. */
+    static String toJsonArray(List<String> strings) {
+      var joiner = new StringJoiner(",", "[", "]");
+      for (var string : strings) {
+        joiner.add('"' + string.replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+      }
+      return joiner.toString();
+    }
+
+    /** Creates a debug message and prints the message to the log. */
+    static void debug(String message) {
+      System.out.printf("::debug::%s%n", message.replaceAll("\\R", "%0A"));
+    }
+
+    /** Creates a warning message and prints the message to the log. */
+    static void warn(String message) {
+      System.out.printf("::warning::%s%n", message.replaceAll("\\R", "%0A"));
+    }
+
+    /** Creates an error message and prints the message to the log. */
+    static void error(String message) {
+      System.out.printf("::error::%s%n", message.replaceAll("\\R", "%0A"));
+    }
+  }
+
+  /**
+   * Durations of the phases of a run and counters of what happened during them.
+   *
+   * <p>The durations of concurrent acquisitions in a batch add up per phase, so they may exceed the
+   * wall-clock time of the run. Resolving includes loading the URI mapping, which is also reported
+   * on its own. The report is emitted as action outputs, appended as a Markdown table to the job
+   * summary, and written as JSON to {@code -Dtimings-file=FILE}, if set.
+   */
+  static final class Metrics {
+    static final Metrics RUN = new Metrics();
+
+    /** Phases in order of a run, the startup includes compiling this source file. */
+    static final List<String> PHASES =
+        List.of(
+            "startup", "resolve", "uri-mapping", "revalidate", "link", "download", "verify",
+            "extract", "prune");
+
+    /** Counters in order of their appearance in a report. */
+    static final List<String> COUNTERS =
+        List.of("bytes", "requests", "retries", "cache-hits", "cache-misses");
+
+    final Map<String, Long> nanos = new ConcurrentHashMap<>();
+    final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+    /** Phases receiving the bytes of response bodies, the time base of the throughput. */
+    static final List<String> TRANSFERS = List.of("uri-mapping", "revalidate", "download");
+
+    /** An action timed as part of a phase. */
+    interface Action<X extends Exception> {
+      void run() throws X;
+    }
+
+    /** A computation timed as part of a phase. */
+    interface Computation<T, X extends Exception> {
+      T compute() throws X;
+    }
+
+    void clear() {
+      nanos.clear();
+      counters.clear();
+    }
+
+    <X extends Exception> void time(String phase, Action<X> action) throws X {
+      var start = System.nanoTime();
+      try {
+        action.run();
+      } finally {
+        add(phase, Duration.ofNanos(System.nanoTime() - start));
+      }
+    }
+
+    <T, X extends Exception> T time(String phase, Computation<T, X> computation) throws X {
+      var start = System.nanoTime();
+      try {
+        return computation.compute();
+      } finally {
+        add(phase, Duration.ofNanos(System.nanoTime() - start));
+      }
+    }
+
+    void add(String phase, Duration duration) {
+      nanos.merge(phase, duration.toNanos(), Long::sum);
+    }
+
+    void count(String counter, long delta) {
+      counters.merge(counter, delta, Long::sum);
+    }
+
+    long millis(String phase) {
+      return TimeUnit.NANOSECONDS.toMillis(nanos.getOrDefault(phase, 0L));
+    }
+
+    /** Effective transfer rate of the transferring phases in MB/s, or zero if nothing arrived. */
+    String computeThroughput() {
+      var bytes = counters.getOrDefault("bytes", 0L);
+      var nanos = TRANSFERS.stream().mapToLong(phase -> this.nanos.getOrDefault(phase, 0L)).sum();
+      var rate = bytes == 0 || nanos == 0 ? 0 : bytes * 1e3 / nanos; // bytes per ns * 1e9 / 1e6
+      return String.format(Locale.ROOT, "%.2f", rate);
+    }
+
+    /** Encode durations in milliseconds and counters as a single-line JSON object. */
+    String toJson() {
+      var joiner = new StringJoiner(",", "{", "}");
+      for (var phase : PHASES) joiner.add("\"%s-ms\":%d".formatted(phase, millis(phase)));
+      for (var counter : COUNTERS) {
+        joiner.add("\"%s\":%d".formatted(counter, counters.getOrDefault(counter, 0L)));
+      }
+      joiner.add("\"mb-per-second\":" + computeThroughput());
+      return joiner.toString();
+    }
+
+    String toMarkdown() {
+      var lines = new ArrayList<String>();
+      lines.add("<details><summary>Timings of setup-java</summary>");
+      lines.add("");
+      lines.add("| Phase or counter | Value |");
+      lines.add("|------------------|------:|");
+      for (var phase : PHASES) {
+        if (nanos.containsKey(phase)) lines.add("| %s | %,d ms |".formatted(phase, millis(phase)));
+      }
+      for (var counter : COUNTERS) {
+        var value = counters.getOrDefault(counter, 0L);
+        lines.add("| %s | %,d |".formatted(counter, value));
+      }
+      lines.add("| throughput | %s MB/s |".formatted(computeThroughput()));
+      lines.add("");
+      lines.add("</details>");
+      return String.join("\n", lines);
+    }
+
+    /** Write the report to the JSON file and the job summary, failures are only logged. */
+    void write() {
+      try {
+        var file = System.getProperty("timings-file", "");
+        if (!file.isBlank()) Files.writeString(Path.of(file), toJson() + "\n");
+        GitHub.appendSummary(toMarkdown());
+      } catch (Exception exception) {
+        GitHub.warn("Writing timings failed: " + exception);
+      }
+    }
+  }
+
+  /**
+   * Flight recording of the events of this program, configured via {@code -Djfr-file=FILE}.
+   *
+   * <p>The recording uses the default settings of the JDK, enables all events of this program,
+   * and is dumped to the file when closed.
+   */
+  record FlightRecording(Recording recording, Path file) implements AutoCloseable {
+    static final List<Class<? extends Event>> EVENTS =
+        List.of(RequestEvent.class, ProgressEvent.class, RetryEvent.class, HashEvent.class);
+
+    /** Start a recording if a file is configured, or return {@code null}. */
+    static FlightRecording start() {
+      var file = System.getProperty("jfr-file", "");
+      if (file.isBlank()) return null;
+      try {
+        FlightRecorder.addPeriodicEvent(ProgressEvent.class, Transfer::commitProgressEvents);
+        var recording = new Recording(Configuration.getConfiguration("default"));
+        EVENTS.forEach(type -> recording.enable(type).withoutThreshold());
+        recording.setName("setup-java");
+        recording.start();
+        return new FlightRecording(recording, Path.of(file));
+      } catch (Exception exception) {
+        GitHub.warn("Flight recording not started: " + exception);
+        return null;
+      }
+    }
+
+    @Override
+    public void close() {
+      try (recording) {
+        recording.stop();
+        recording.dump(file);
+        GitHub.debug("Dumped flight recording to " + file);
+      } catch (IOException exception) {
+        GitHub.warn("Flight recording not dumped: " + exception);
+      }
+    }
+  }
+
+  /** Flight recorder event of an HTTP request, lasting until its response body was received. */
+  @Name("setup.java.Request")
+  @Label("HTTP Request")
+  @Category("setup-java")
+  static final class RequestEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Method")
+    String method;
+
+    @Label("Range")
+    String range;
+
+    @Label("Status")
+    int status;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    static RequestEvent start() {
+      var event = new RequestEvent();
+      event.begin();
+      return event;
+    }
+
+    /** Commit this event, a failed request without a response has status {@code -1}. */
+    void end(HttpRequest request, HttpResponse<?> response) {
+      end();
+      if (!shouldCommit()) return;
+      uri = request.uri().toString();
+      method = request.method();
+      range = request.headers().firstValue("range").orElse(null);
+      status = response == null ? -1 : response.statusCode();
+      var length = response == null ? null : response.headers().firstValueAsLong("content-length");
+      bytes = length == null ? -1 : length.orElse(-1);
+      commit();
+    }
+  }
+
+  /** Periodic flight recorder event of a download in progress. */
+  @Name("setup.java.Progress")
+  @Label("Download Progress")
+  @Category("setup-java")
+  @Period("1 s")
+  static final class ProgressEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Rate")
+    @DataAmount
+    @Frequency
+    long rate;
+  }
+
+  /** Flight recorder event of a failed download attempt that is retried. */
+  @Name("setup.java.Retry")
+  @Label("Download Retry")
+  @Category("setup-java")
+  static final class RetryEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Cause")
+    String cause;
+
+    @Label("Delay")
+    @Timespan(Timespan.MILLISECONDS)
+    long delay;
+
+    static void commit(String uri, int attempt, Exception cause, Duration delay) {
+      var event = new RetryEvent();
+      if (!event.shouldCommit()) return;
+      event.uri = uri;
+      event.attempt = attempt;
+      event.cause = cause.toString();
+      event.delay = delay.toMillis();
+      event.commit();
+    }
+  }
+
+  /** Flight recorder event of computing the checksum of a file. */
+  @Name("setup.java.Hash")
+  @Label("Checksum Computation")
+  @Category("setup-java")
+  static final class HashEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+
+  /**
+   * A download in progress, observed by periodic events and throughput logs while registered.
+   */
+  static final class Transfer implements AutoCloseable {
+    static final Set<Transfer> ACTIVE = ConcurrentHashMap.newKeySet();
+    static final Duration LOG_INTERVAL = Duration.ofSeconds(10);
+
+    final String uri;
+    final LongSupplier bytes;
+    final long start = System.nanoTime();
+    /*lazy*/ ScheduledFuture<?> log;
+
+    Transfer(String uri, LongSupplier bytes) {
+      this.uri = uri;
+      this.bytes = bytes;
+    }
+
+    static Transfer start(String uri, LongSupplier bytes) {
+      var transfer = new Transfer(uri, bytes);
+      ACTIVE.add(transfer);
+      var millis = LOG_INTERVAL.toMillis();
+      transfer.log =
+          Watchdog.SCHEDULER.scheduleAtFixedRate(
+              transfer::logThroughput, millis, millis, TimeUnit.MILLISECONDS);
+      return transfer;
+    }
+
+    void logThroughput() {
+      var bytes = this.bytes.getAsLong();
+      var seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+      var name = uri.substring(uri.lastIndexOf('/') + 1);
+      var format = "Downloaded %.1f MB of %s in %.0f s at %.2f MB/s%n";
+      System.out.printf(Locale.ROOT, format, bytes / 1e6, name, seconds, bytes / 1e6 / seconds);
+    }
+
+    static void commitProgressEvents() {
+      for (var transfer : ACTIVE) {
+        var event = new ProgressEvent();
+        event.uri = transfer.uri;
+        event.bytes = transfer.bytes.getAsLong();
+        var nanos = Math.max(1, System.nanoTime() - transfer.start);
+        event.rate = event.bytes * 1_000_000_000 / nanos;
+        event.commit();
+      }
+    }
+
+    @Override
+    public void close() {
+      log.cancel(false);
+      ACTIVE.remove(this);
+    }
+  }
+
+  /** Daemon thread running periodic checks of transfers, never keeping the program alive. */
+  static final class Watchdog {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("watchdog").daemon().factory());
+  }
+
+  /**
+   * Body subscriber failing a response whose body stalls.
+   *
+   * <p>The body stalls if less than {@code -Dstall-rate=BYTES} per second, defaulting to 1024, are
+   * received within a window of {@code -Dstall-window=SECONDS}, defaulting to 60. A stalled body is
+   * cancelled and fails with an {@link IOException}, which lets the download be retried instead of
+   * hanging until the job times out. A rate of 0 disables the detection.
+   */
+  static final class MonitoringSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+    final HttpResponse.BodySubscriber<T> delegate;
+    final String uri;
+    final long floor; // minimum number of bytes per window
+    /*lazy*/ Flow.Subscription subscription;
+    /*lazy*/ ScheduledFuture<?> check;
+    long received;
+    long checked; // bytes received at the last check
+    boolean stalled;
+
+    MonitoringSubscriber(HttpResponse.BodySubscriber<T> delegate, String uri, long floor) {
+      this.delegate = delegate;
+      this.uri = uri;
+      this.floor = floor;
+    }
+
+    /** Wrap the subscribers created by the handler, unless stall detection is disabled. */
+    static <T> HttpResponse.BodyHandler<T> monitor(
+        HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+      var rate = Long.getLong("stall-rate", 1024);
+      var window = Duration.ofSeconds(Integer.getInteger("stall-window", 60));
+      if (rate <= 0 || window.isZero()) return handler;
+      var uri = request.uri().toString();
+      var floor = rate * window.toSeconds();
+      return info -> new MonitoringSubscriber<>(handler.apply(info), uri, floor).start(window);
+    }
+
+    MonitoringSubscriber<T> start(Duration window) {
+      var millis = window.toMillis();
+      var scheduler = Watchdog.SCHEDULER;
+      check = scheduler.scheduleAtFixedRate(this::check, millis, millis, TimeUnit.MILLISECONDS);
+      delegate.getBody().whenComplete((body, throwable) -> check.cancel(false));
+      return this;
+    }
+
+    /** Fail the body if too few bytes were received since the last check. */
+    synchronized void check() {
+      if (received - checked >= floor) {
+        checked = received;
+        return;
+      }
+      check.cancel(false);
+      stalled = true;
+      var message = "Transfer stalled at %d bytes, fewer than %d bytes per window: %s";
+      delegate.onError(new IOException(message.formatted(received, floor, uri)));
+      if (subscription != null) subscription.cancel();
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+      return delegate.getBody();
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> buffers) {
+      if (stalled) return;
+      for (var buffer : buffers) received += buffer.remaining();
+      delegate.onNext(buffers);
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+      if (stalled) return;
+      check.cancel(false);
+      delegate.onError(throwable);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      if (stalled) return;
+      check.cancel(false);
+      delegate.onComplete();
+    }
+  }
+
+  /** Failure due to the status of a response, its body was not written anywhere. */
+  static final class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+    final transient Optional<Duration> retryAfter;
+
+    HttpStatusException(HttpResponse<?> response) {
+      super("Unexpected " + response);
+      this.status = response.statusCode();
+      this.retryAfter = RetryPolicy.parseRetryAfter(response.headers());
+    }
+  }
+
+  /**
+   * Policy of retrying failed attempts with exponential backoff, jitter, and a time budget.
+   *
+   * <p>Only transient failures are retried: I/O errors, timeouts, stalled transfers, and responses
+   * with status 408, 425, 429, 500, 502, 503, or 504. Other statuses and failures of the local
+   * file system are fatal. The delay before the next attempt is taken from a {@code Retry-After}
+   * header or grows exponentially, from 2 seconds up to 60 seconds, with its second half randomized
+   * so that many runners failing at the same time don't retry in lockstep. Attempts stop after
+   * {@code -Dretry-attempts=N}, defaulting to 5, or once the next one would start after {@code
+   * -Dretry-budget=SECONDS}, defaulting to 300. Downloads of archives count the budget from their
+   * last attempt that received bytes.
+   */
+  record RetryPolicy(int attempts, Duration budget) {
+    static final Duration BASE_DELAY = Duration.ofSeconds(2);
+    static final Duration MAX_DELAY = Duration.ofSeconds(60);
+
+    static RetryPolicy of() {
+      var attempts = Integer.getInteger("retry-attempts", 5);
+      if (attempts < 1) throw new IllegalArgumentException("retry-attempts < 1: " + attempts);
+      return new RetryPolicy(attempts, Duration.ofSeconds(Integer.getInteger("retry-budget", 300)));
+    }
+
+    RetryPolicy withBudget(Duration budget) {
+      return new RetryPolicy(attempts, budget.compareTo(this.budget) < 0 ? budget : this.budget);
+    }
+
+    static boolean isTransient(int status) {
+      return switch (status) {
+        case 408, 425, 429, 500, 502, 503, 504 -> true;
+        default -> false;
+      };
+    }
+
+    static boolean isTransient(Exception exception) {
+      if (exception instanceof HttpStatusException failure) return isTransient(failure.status);
+      if (exception instanceof FileSystemException) return false;
+      return exception instanceof IOException;
+    }
+
+    /**
+     * Compute the delay before the next attempt.
+     *
+     * @param attempt the number of the failed attempt, starting with 1
+     * @param exception the failure of the attempt
+     * @param elapsed the time spent since the first attempt started, or since the end of the
+     *     last attempt that made progress
+     * @return the delay, or empty if the failure is fatal or no attempts are left
+     */
+    Optional<Duration> computeDelay(int attempt, Exception exception, Duration elapsed) {
+      if (attempt >= attempts || !isTransient(exception)) return Optional.empty();
+      var delay =
+          exception instanceof HttpStatusException failure && failure.retryAfter.isPresent()
+              ? failure.retryAfter.get()
+              : computeBackoff(attempt);
+      if (elapsed.plus(delay).compareTo(budget) > 0) return Optional.empty();
+      return Optional.of(delay);
+    }
+
+    /** Exponential delay of the given attempt, with its second half randomized. */
+    static Duration computeBackoff(int attempt) {
+      var exponential = BASE_DELAY.toMillis() << Math.min(attempt - 1, 16);
+      var half = Math.min(exponential, MAX_DELAY.toMillis()) / 2;
+      return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /** Parse a {@code Retry-After} header of delay seconds or an HTTP date. */
+    static Optional<Duration> parseRetryAfter(HttpHeaders headers) {
+      var value = headers.firstValue("retry-after").map(String::strip).orElse("");
+      if (value.isEmpty()) return Optional.empty();
+      try {
+        if (value.matches("\\d+")) return Optional.of(Duration.ofSeconds(Long.parseLong(value)));
+        var date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+        var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+        return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+      } catch (RuntimeException exception) {
+        GitHub.debug("Ignoring Retry-After header: " + value);
+        return Optional.empty();
+      }
+    }
+
+    /** Call the action until it succeeds, or rethrow its last failure. */
+    <T> T call(String uri, Callable<T> action) throws Exception {
+      var start = System.nanoTime();
+      for (int attempt = 1; ; attempt++) {
+        try {
+          return action.call();
+        } catch (Exception exception) {
+          var elapsed = Duration.ofNanos(System.nanoTime() - start);
+          var delay = computeDelay(attempt, exception, elapsed);
+          if (delay.isEmpty()) throw exception;
+          Metrics.RUN.count("retries", 1);
+          var millis = delay.get().toMillis();
+          GitHub.debug("Retrying %s in %d ms due to: %s".formatted(uri, millis, exception));
+          RetryEvent.commit(uri, attempt, exception, delay.get());
+          Thread.sleep(delay.get());
+        }
       }
     }
   }
 
-  record JDK(String release, String version, String os, String arch, String type) {
+  /**
+   * HTTP-related helper, sharing a single client and its connections for all requests.
+   *
+   * <p>Connecting times out after {@code -Dconnect-timeout=SECONDS}, defaulting to 30, and waiting
+   * for the headers of a response after {@code -Drequest-timeout=SECONDS}, defaulting to 60. The
+   * body of a response is received as long as it doesn't stall, see {@link MonitoringSubscriber}.
+   */
+  static class Browser {
+    final HttpClient client;
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicLong received = new AtomicLong(); // bytes of response bodies written to files
+    final Duration requestTimeout = Duration.ofSeconds(Integer.getInteger("request-timeout", 60));
 
-    static String computeOsName() {
-      var name = System.getProperty("os.name").toLowerCase();
-      if (name.contains("win")) return "windows";
-      if (name.contains("mac")) return "macos";
-      return "linux";
+    Browser() {
+      this.client =
+          HttpClient.newBuilder()
+              .followRedirects(HttpClient.Redirect.NORMAL)
+              .connectTimeout(Duration.ofSeconds(Integer.getInteger("connect-timeout", 30)))
+              .build();
     }
 
-    static String computeOsArch() {
-      var arch = System.getProperty("os.arch", "x64");
-      if (arch.equals("amd64")) return "x64";
-      if (arch.equals("x86_64")) return "x64";
-      return arch;
+    HttpRequest.Builder newRequest(String uri) {
+      return HttpRequest.newBuilder(URI.create(uri)).timeout(requestTimeout);
     }
 
-    static String computeFileType() {
-      var name = System.getProperty("os.name").toLowerCase();
-      return name.contains("win") ? "zip" : "tar.gz";
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+        throws Exception {
+      requests.incrementAndGet();
+      var event = RequestEvent.start();
+      HttpResponse<T> response = null;
+      try {
+        return response = client.send(request, MonitoringSubscriber.monitor(request, handler));
+      } finally {
+        event.end(request, response);
+      }
     }
-  }
 
-  /** Download helper. */
-  static class Downloader {
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(
+        HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+      requests.incrementAndGet();
+      var event = RequestEvent.start();
+      return client
+          .sendAsync(request, MonitoringSubscriber.monitor(request, handler))
+          .whenComplete((response, throwable) -> event.end(request, response));
+    }
 
-    final Path archive;
-    final String uri;
-    final Browser browser;
+    String browse(String uri) throws Exception {
+      var request = newRequest(uri).build();
+      return send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
 
-    Downloader(Path archive, String uri) {
-      this.archive = archive;
-      this.uri = uri;
-      this.browser = new Browser();
+    /**
+     * Fetch a text resource in the background, retrying transient failures as long as the retry
+     * policy allows. A missing resource yields an empty optional.
+     */
+    CompletableFuture<Optional<String>> browseAsync(String uri) {
+      var future = new CompletableFuture<Optional<String>>();
+      Thread.ofVirtual()
+          .name("browse")
+          .start(
+              () -> {
+                try {
+                  future.complete(RetryPolicy.of().call(uri, () -> browseIfPresent(uri)));
+                } catch (Exception exception) {
+                  future.completeExceptionally(exception);
+                }
+              });
+      return future;
     }
 
-    void checkSizeAndDeleteIfDifferent() throws Exception {
-      if (Files.notExists(archive)) return;
-      var cachedSize = Files.size(archive);
-      GitHub.debug("Cached size: " + cachedSize);
-      var remoteSize = browser.head(uri).headers().firstValueAsLong("content-length").orElse(-1);
-      GitHub.debug("Remote size: " + remoteSize);
-      if (cachedSize == remoteSize) return;
-      Files.delete(archive);
+    /** Fetch a text resource, failing on a status that is worth retrying. */
+    Optional<String> browseIfPresent(String uri) throws Exception {
+      var response = send(newRequest(uri).build(), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() == 200) return Optional.of(response.body().strip());
+      if (RetryPolicy.isTransient(response.statusCode())) throw new HttpStatusException(response);
+      return Optional.empty();
     }
 
-    void downloadArchive(boolean dryRun) throws Exception {
-      if (Files.exists(archive)) return;
-      var head = browser.head(uri);
-      GitHub.debug(head.toString());
-      if (dryRun) {
-        return;
+    HttpResponse<Path> download(String uri, Path file) throws Exception {
+      return download(uri, file, null, null);
+    }
+
+    HttpResponse<Path> download(String uri, Path file, String validator) throws Exception {
+      return download(uri, file, validator, null);
+    }
+
+    HttpResponse<Path> download(String uri, Path file, String validator, Hasher hasher)
+        throws Exception {
+      return download(uri, file, validator, hasher, info -> {});
+    }
+
+    /**
+     * Download a file, resuming an existing partial file if the validator is still current.
+     *
+     * <p>An optional hasher is fed with all bytes while they are written to the file. The observer
+     * sees the status and headers of the response before its body is received, even if receiving
+     * the body fails later on.
+     */
+    HttpResponse<Path> download(
+        String uri,
+        Path file,
+        String validator,
+        Hasher hasher,
+        Consumer<HttpResponse.ResponseInfo> observer)
+        throws Exception {
+      var parent = file.getParent();
+      if (parent != null) Files.createDirectories(parent);
+      var builder = newRequest(uri);
+      var offset = validator == null || Files.notExists(file) ? 0 : Files.size(file);
+      if (offset > 0) {
+        GitHub.debug("Resuming download of " + uri + " at byte " + offset);
+        builder.header("Range", "bytes=" + offset + "-").header("If-Range", validator);
       }
-      int retry = 0;
-      while (true) {
+      if (hasher != null) hasher.resume(file, offset);
+      var response =
+          send(
+              builder.build(),
+              info -> {
+                observer.accept(info);
+                if (!isSuccessful(info.statusCode())) return discarding();
+                return ofFile(file, info.statusCode() == 206, hasher);
+              });
+      if (!isSuccessful(response.statusCode())) throw new HttpStatusException(response);
+      return response;
+    }
+
+    /** Download a file unless the resource still matches the given entity tag or date. */
+    HttpResponse<Path> downloadIfModified(
+        String uri, Path file, String etag, String lastModified, Hasher hasher) throws Exception {
+      var parent = file.getParent();
+      if (parent != null) Files.createDirectories(parent);
+      var builder = newRequest(uri);
+      if (etag != null) builder.header("If-None-Match", etag);
+      if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+      var response =
+          send(
+              builder.build(),
+              info -> info.statusCode() == 200 ? ofFile(file, false, hasher) : discarding());
+      var status = response.statusCode();
+      if (status != 200 && status != 304) throw new HttpStatusException(response);
+      return response;
+    }
+
+    /** Test for a status of a response whose body is the requested content. */
+    static boolean isSuccessful(int status) {
+      return status == 200 || status == 206;
+    }
+
+    /** Create a body subscriber discarding the body of an error or unmodified response. */
+    static HttpResponse.BodySubscriber<Path> discarding() {
+      return HttpResponse.BodySubscribers.replacing(null);
+    }
+
+    /** Create a body subscriber writing to a file and feeding an optional hasher. */
+    HttpResponse.BodySubscriber<Path> ofFile(Path file, boolean append, Hasher hasher) {
+      var subscriber =
+          append
+              ? HttpResponse.BodySubscribers.ofFile(file, CREATE, WRITE, APPEND)
+              : HttpResponse.BodySubscribers.ofFile(file, CREATE, WRITE, TRUNCATE_EXISTING);
+      if (hasher == null) return counting(subscriber);
+      if (!append) hasher.reset();
+      return counting(new TappingSubscriber<>(subscriber, hasher::update));
+    }
+
+    /** Count the bytes received by a subscriber, excluding those resumed from a partial file. */
+    <T> HttpResponse.BodySubscriber<T> counting(HttpResponse.BodySubscriber<T> subscriber) {
+      return new TappingSubscriber<>(subscriber, buffer -> received.addAndGet(buffer.remaining()));
+    }
+
+    /** Download a file of known size by requesting the given number of byte ranges concurrently. */
+    List<HttpResponse<Void>> download(String uri, Path file, long size, int segments)
+        throws Exception {
+      return downloadSegments(uri, file, Segment.split(size, segments), null);
+    }
+
+    /**
+     * Download all incomplete segments of a file concurrently, each written at its own offset.
+     *
+     * <p>Segments keep their progress across calls: partially written segments are resumed if the
+     * validator is still current, otherwise all segments are reset and an exception is thrown.
+     */
+    List<HttpResponse<Void>> downloadSegments(
+        String uri, Path file, List<Segment> segments, String validator) throws Exception {
+      var parent = file.getParent();
+      if (parent != null) Files.createDirectories(parent);
+      if (validator == null || Files.notExists(file)) segments.forEach(Segment::reset);
+      try (var channel = FileChannel.open(file, CREATE, WRITE)) {
+        var futures = new ArrayList<CompletableFuture<HttpResponse<Void>>>();
+        for (var segment : segments) {
+          if (segment.isComplete()) continue;
+          var builder = newRequest(uri).header("Range", segment.range());
+          if (segment.isStarted()) builder.header("If-Range", validator);
+          futures.add(
+              sendAsync(
+                  builder.build(),
+                  info ->
+                      info.statusCode() == 206
+                          ? counting(new PositionalSubscriber(channel, segment))
+                          : HttpResponse.BodySubscribers.replacing(null)));
+        }
+        var responses = new ArrayList<HttpResponse<Void>>();
         try {
-          GitHub.debug("Downloading " + uri);
-          var response = browser.download(uri, archive);
-          GitHub.debug(response.toString());
-          return;
-        } catch (IOException exception) {
-          var message = Optional.ofNullable(exception.getMessage()).orElseGet(exception::toString);
-          if (++retry == 3) {
-            GitHub.error("Download failed due to: " + message);
-            throw exception;
+          for (var future : futures) {
+            var response = future.get();
+            if (response.statusCode() != 206) {
+              segments.forEach(Segment::reset);
+              if (response.statusCode() >= 400) throw new HttpStatusException(response);
+              throw new IOException("Expected partial content: " + response);
+            }
+            responses.add(response);
           }
-          var seconds = retry * 10;
-          GitHub.warn(String.format("Retrying in %d seconds due to: %s", seconds, message));
-          //noinspection BusyWait
-          Thread.sleep(seconds * 1000L);
+        } catch (ExecutionException exception) {
+          if (exception.getCause() instanceof IOException cause) throw cause;
+          throw exception;
+        } finally {
+          futures.forEach(future -> future.cancel(true));
         }
+        channel.truncate(segments.get(segments.size() - 1).end + 1);
+        return responses;
       }
     }
 
-    void verifyChecksums(String checksum) throws Exception {
-      if (Files.notExists(archive)) return;
-      var cached = computeChecksum(archive);
-      GitHub.debug("Cached checksum: " + cached);
-
-      var remoteChecksum = findRemoteChecksum(checksum);
-      if (remoteChecksum.isEmpty()) {
-        GitHub.warn("Checksum not available for: " + uri);
-      } else {
-        var remote = remoteChecksum.get();
-        GitHub.debug("Remote checksum: " + remote);
-        if (cached.equals(remote)) {
-          return;
+    /**
+     * Download a file of unknown size in concurrent segments, without a preceding HEAD request.
+     *
+     * <p>The request of the first segment asks for all bytes of the file. Its response is passed to
+     * the splitter, which returns the segments of the file: the remaining ones are requested as
+     * soon as the response arrives, and the first segment stops reading at its end. If no segments
+     * are returned, for example because the server responded with the entire file instead of
+     * partial content, the body is written as a whole while feeding the optional hasher.
+     *
+     * @return the segments returned by the splitter
+     */
+    List<Segment> downloadSegments(
+        String uri,
+        Path file,
+        Hasher hasher,
+        Function<HttpResponse.ResponseInfo, List<Segment>> splitter)
+        throws Exception {
+      var parent = file.getParent();
+      if (parent != null) Files.createDirectories(parent);
+      var request = newRequest(uri).header("Range", "bytes=0-").build();
+      var split = new CompletableFuture<List<Segment>>();
+      try (var channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+        var first =
+            sendAsync(
+                request,
+                info -> {
+                  if (!isSuccessful(info.statusCode())) {
+                    split.complete(List.of());
+                    return HttpResponse.BodySubscribers.replacing(null);
+                  }
+                  var segments = splitter.apply(info);
+                  split.complete(segments);
+                  if (segments.isEmpty()) {
+                    return HttpResponse.BodySubscribers.mapping(
+                        ofFile(file, false, hasher), path -> null);
+                  }
+                  return counting(new PositionalSubscriber(channel, segments.get(0)));
+                });
+        first.whenComplete(
+            (response, throwable) -> {
+              if (throwable != null) split.completeExceptionally(throwable);
+            });
+        try {
+          var segments = await(split);
+          if (segments.isEmpty()) {
+            var response = await(first);
+            GitHub.debug(response.toString());
+            if (!isSuccessful(response.statusCode())) throw new HttpStatusException(response);
+            return segments;
+          }
+          GitHub.debug("Downloading " + uri + " in " + segments.size() + " segments");
+          var validator = computeValidator(await(first).headers()).orElse(null);
+          var rest = segments.subList(1, segments.size());
+          downloadSegments(uri, file, rest, validator).forEach(r -> GitHub.debug(r.toString()));
+          GitHub.debug(await(first).toString());
+          return segments;
+        } finally {
+          first.cancel(true);
         }
       }
-      var message = "Checksum verification failed, deleting cached archive";
-      Files.delete(archive);
-      GitHub.error(message);
-      throw new AssertionError(message);
     }
 
-    String computeChecksum(Path path) {
+    /** Parse the total size of a resource from a {@code Content-Range: bytes 0-9/10} header. */
+    static Optional<Long> parseContentRangeSize(HttpHeaders headers) {
+      return headers
+          .firstValue("content-range")
+          .map(range -> range.substring(range.lastIndexOf('/') + 1))
+          .filter(size -> size.matches("\\d+"))
+          .map(Long::parseLong);
+    }
+
+    HttpResponse<?> head(String uri) throws Exception {
+      return send(newHeadRequest(uri), HttpResponse.BodyHandlers.discarding());
+    }
+
+    HttpRequest newHeadRequest(String uri) {
+      return newRequest(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    /**
+     * Find the first of the given URIs to answer a HEAD request successfully, hedging the probes.
+     *
+     * <p>Probes are sent in the given order: the next one as soon as an earlier one failed, or
+     * once none of the pending ones answered within the hedge delay. Pending probes are cancelled
+     * when a URI was found.
+     */
+    Optional<String> findFastest(List<String> uris, Duration hedge) throws InterruptedException {
+      var probes = new ArrayList<CompletableFuture<HttpResponse<Void>>>();
+      var answered = new LinkedBlockingQueue<Integer>(); // indexes of completed probes
       try {
-        var md = MessageDigest.getInstance("SHA-256");
-        try (var input = new BufferedInputStream(new FileInputStream(path.toFile()));
-            var output = new DigestOutputStream(OutputStream.nullOutputStream(), md)) {
-          input.transferTo(output);
+        for (int failed = 0; failed < uris.size(); ) {
+          if (probes.size() < uris.size()) {
+            var index = probes.size();
+            var request = newHeadRequest(uris.get(index));
+            var probe = sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            probe.whenComplete((response, throwable) -> answered.add(index));
+            probes.add(probe);
+          }
+          var index =
+              probes.size() < uris.size()
+                  ? answered.poll(hedge.toNanos(), TimeUnit.NANOSECONDS)
+                  : answered.take();
+          if (index == null) continue; // hedge with the next probe
+          var response = probes.get(index).handle((result, throwable) -> result).join();
+          if (response != null && isSuccessful(response.statusCode())) {
+            return Optional.of(uris.get(index));
+          }
+          GitHub.debug("Probe failed: " + (response == null ? uris.get(index) : response));
+          failed++;
         }
-        var length = md.getDigestLength() * 2;
-        return String.format("%0" + length + "x", new BigInteger(1, md.digest()));
-      } catch (IOException exception) {
-        throw new UncheckedIOException(exception);
-      } catch (NoSuchAlgorithmException exception) {
-        var algorithms = Security.getAlgorithms("MessageDigest");
-        throw new IllegalArgumentException(exception + ": " + algorithms);
+        return Optional.empty();
+      } finally {
+        probes.forEach(probe -> probe.cancel(true));
       }
     }
 
-    Optional<String> findRemoteChecksum(String checksum) throws Exception {
-      if (!checksum.startsWith("https://")) return Optional.of(checksum);
-      if (browser.head(checksum).statusCode() == 200) return Optional.of(browser.browse(checksum));
-      return Optional.empty();
+    /** Find a strong entity tag or the last-modified date usable in an If-Range header. */
+    static Optional<String> computeValidator(HttpHeaders headers) {
+      var etag = headers.firstValue("etag").filter(tag -> !tag.startsWith("W/"));
+      return etag.or(() -> headers.firstValue("last-modified"));
     }
   }
 
-  /**
-   * GitHub Actions helper.
-   *
-   * @see <a
-   *     href="https://docs.github.com/en/actions/learn-github-actions/workflow-commands-for-github-actions">Workflow
-   *     commands for GitHub Actions</a>
-   */
-  static class GitHub {
-    /** Sets an action's output parameter. */
-    static void setOutput(String name, Object value) {
-      if (name.isBlank() || value.toString().isBlank()) { // implicit null checks included
-        throw new IllegalArgumentException("name or value are blank: " + name + "=" + value);
-      }
-      var githubOutput = System.getenv("GITHUB_OUTPUT");
-      if (githubOutput == null) {
-        throw new AssertionError("No such environment variable: GITHUB_OUTPUT");
+  /** A byte range of a file being downloaded, tracking how many of its bytes were written. */
+  static final class Segment {
+    final long start;
+    final long end; // inclusive
+    volatile long position;
+
+    Segment(long start, long end) {
+      this.start = start;
+      this.end = end;
+      this.position = start;
+    }
+
+    /** Split the given size into at most the given number of consecutive segments. */
+    static List<Segment> split(long size, int count) {
+      var length = Math.ceilDiv(size, count);
+      var segments = new ArrayList<Segment>();
+      for (long start = 0; start < size; start += length) {
+        segments.add(new Segment(start, Math.min(start + length, size) - 1));
       }
-      try {
-        var file = Path.of(githubOutput);
-        if (file.getParent() != null) Files.createDirectories(file.getParent());
-        var lines = (name + "=" + value).lines().toList();
-        if (lines.size() != 1) {
-          throw new UnsupportedOperationException("Multiline strings are no supported");
-        }
-        debug("Write output %s to %s".formatted(lines, file));
-        Files.write(file, lines, UTF_8, CREATE, APPEND, WRITE);
-      } catch (IOException exception) {
-        throw new UncheckedIOException(exception);
-      }  
+      return List.copyOf(segments);
     }
 
-    /** Creates a debug message and prints the message to the log. */
-    static void debug(String message) {
-      System.out.printf("::debug::%s%n", message.replaceAll("\\R", "%0A"));
+    boolean isStarted() {
+      return position > start;
     }
 
-    /** Creates a warning message and prints the message to the log. */
-    static void warn(String message) {
-      System.out.printf("::warning::%s%n", message.replaceAll("\\R", "%0A"));
+    boolean isComplete() {
+      return position > end;
     }
 
-    /** Creates an error message and prints the message to the log. */
-    static void error(String message) {
-      System.out.printf("::error::%s%n", message.replaceAll("\\R", "%0A"));
+    String range() {
+      return "bytes=%d-%d".formatted(position, end);
+    }
+
+    void reset() {
+      position = start;
     }
   }
 
-  /** HTTP-related helper. */
-  static class Browser {
-    final HttpClient client;
+  /** Body subscriber passing a view of each received buffer to a tap before delegating it. */
+  record TappingSubscriber<T>(HttpResponse.BodySubscriber<T> delegate, Consumer<ByteBuffer> tap)
+      implements HttpResponse.BodySubscriber<T> {
 
-    Browser() {
-      this.client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+    @Override
+    public CompletionStage<T> getBody() {
+      return delegate.getBody();
     }
 
-    String browse(String uri) throws Exception {
-      var request = HttpRequest.newBuilder(URI.create(uri)).build();
-      return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      delegate.onSubscribe(subscription);
     }
 
-    HttpResponse<Path> download(String uri, Path file) throws Exception {
-      var parent = file.getParent();
-      if (parent != null) Files.createDirectories(parent);
-      var request = HttpRequest.newBuilder(URI.create(uri)).build();
-      return client.send(request, HttpResponse.BodyHandlers.ofFile(file));
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+      buffers.forEach(buffer -> tap.accept(buffer.duplicate()));
+      delegate.onNext(buffers);
     }
 
-    HttpResponse<?> head(String uri) throws Exception {
-      var request =
-          HttpRequest.newBuilder(URI.create(uri))
-              .method("HEAD", HttpRequest.BodyPublishers.noBody())
-              .build();
-      return client.send(request, HttpResponse.BodyHandlers.discarding());
+    @Override
+    public void onError(Throwable throwable) {
+      delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      delegate.onComplete();
+    }
+  }
+
+  /**
+   * Body subscriber writing the received bytes of a segment to its position in a file channel.
+   *
+   * <p>Bytes beyond the end of the segment are not written, the body is cancelled instead.
+   */
+  static class PositionalSubscriber implements HttpResponse.BodySubscriber<Void> {
+    final FileChannel channel;
+    final Segment segment;
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    Flow.Subscription subscription;
+
+    PositionalSubscriber(FileChannel channel, Segment segment) {
+      this.channel = channel;
+      this.segment = segment;
+    }
+
+    @Override
+    public CompletionStage<Void> getBody() {
+      return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+      if (result.isDone()) return;
+      try {
+        var overflow = false;
+        for (var buffer : buffers) {
+          var remaining = segment.end + 1 - segment.position;
+          if (buffer.remaining() > remaining) {
+            buffer.limit(buffer.position() + (int) remaining);
+            overflow = true;
+          }
+          while (buffer.hasRemaining()) {
+            segment.position += channel.write(buffer, segment.position);
+          }
+        }
+        if (overflow) {
+          subscription.cancel();
+          result.complete(null);
+          return;
+        }
+        subscription.request(1);
+      } catch (IOException exception) {
+        subscription.cancel();
+        result.completeExceptionally(exception);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      result.complete(null);
     }
   }
 
@@ -319,11 +3319,16 @@ public class Download {
 
     /** Try to instantiate a website implementation for the given hint. */
     static Optional<Website> find(String hint) {
+      return find(hint, new Browser());
+    }
+
+    /** Try to instantiate a website implementation for the given hint, using the browser. */
+    static Optional<Website> find(String hint, Browser browser) {
       if (hint.equals(OracleComWebsite.NAME) || hint.startsWith(OracleComWebsite.URI_PREFIX)) {
         return Optional.of(new OracleComWebsite());
       }
       if (hint.equals(JavaNetWebsite.NAME) || hint.startsWith(JavaNetWebsite.URI_PREFIX)) {
-        return Optional.of(new JavaNetWebsite());
+        return Optional.of(new JavaNetWebsite(browser));
       }
       return Optional.empty();
     }
@@ -331,11 +3336,7 @@ public class Download {
     Optional<String> findUri(JDK jdk);
 
     default Path computeArchivePath(String uri) {
-      var file = uri.substring(uri.lastIndexOf('/') + 1);
-      var home = System.getProperty("user.home");
-      var hash = Integer.toHexString(uri.hashCode());
-      var cache = Path.of(home, ".oracle-actions", "setup-java", hash);
-      return cache.resolve(file);
+      return Store.of().computeArchivePath(uri);
     }
 
     default String computeVersionString(String uri, String defaultVersion) {
@@ -389,6 +3390,32 @@ public class Download {
     default String getChecksum(String uri) {
       return uri + ".sha256";
     }
+
+    /** Alternate URIs of the given uri at the mirrors configured via {@code -Dmirrors=BASE,...}. */
+    default List<String> computeMirrorUris(String uri) {
+      return computeMirrorUris(uri, System.getProperty("mirrors", ""));
+    }
+
+    /**
+     * Compute the alternate URIs of the given uri at each of the comma-separated base URIs.
+     *
+     * <p>A mirror hosts a copy of a file at its base URI followed by the host and path of the
+     * original URI: {@code https://download.oracle.com/java/...} is mirrored at {@code
+     * BASE/download.oracle.com/java/...}.
+     */
+    static List<String> computeMirrorUris(String uri, String bases) {
+      var original = URI.create(uri);
+      var uris = new ArrayList<String>();
+      for (var base : bases.strip().split("\\s*,\\s*")) {
+        if (base.isEmpty()) continue;
+        if (!base.matches("https?://.+")) {
+          throw new IllegalArgumentException("Mirror must be an HTTP(S) URI: " + base);
+        }
+        var prefix = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        uris.add(prefix + "/" + original.getHost() + original.getRawPath());
+      }
+      return List.copyOf(uris);
+    }
   }
 
   /** JDK builds hosted at {@code https://oracle.com}. */
@@ -434,7 +3461,20 @@ public class Download {
   static class JavaNetWebsite implements Website {
     static String NAME = "jdk.java.net";
     static String URI_PREFIX = "https://download.java.net";
+    static String URI_MAPPING_FILE = "jdk.java.net-uri.properties";
+    static String URI_MAPPING_URI =
+        "https://raw.githubusercontent.com"
+            + "/oracle-actions/setup-java/main" // user/repo/branch
+            + "/"
+            + URI_MAPPING_FILE;
     static /*lazy*/ Properties URI_MAPPING = null;
+    static Duration MAPPING_RETRY_BUDGET = Duration.ofSeconds(10);
+
+    final Browser browser;
+
+    JavaNetWebsite(Browser browser) {
+      this.browser = browser;
+    }
 
     @Override
     public List<Pattern> parseVersionPatterns() {
@@ -442,7 +3482,7 @@ public class Download {
     }
 
     @Override
-    public synchronized Optional<String> findUri(JDK jdk) {
+    public Optional<String> findUri(JDK jdk) {
       var key =
           new StringJoiner(",")
               .add(jdk.release)
@@ -450,26 +3490,92 @@ public class Download {
               .add(jdk.os)
               .add(jdk.arch)
               .toString();
-      if (URI_MAPPING == null) {
-        try {
-          URI_MAPPING = new Properties();
-          var browser = new Browser();
-          var s =
-              browser.browse(
-                  "https://raw.githubusercontent.com"
-                      + "/oracle-actions/setup-java/main" // user/repo/branch
-                      + "/jdk.java.net-uri.properties");
-          URI_MAPPING.load(new StringReader(s));
-        } catch (Exception exception) {
-          GitHub.warn("Caught exception: " + exception);
-          return Optional.empty();
-        }
-      }
-      var value = URI_MAPPING.getProperty(key);
+      var mapping = loadUriMapping();
+      if (mapping.isEmpty()) return Optional.empty();
+      var value = mapping.get().getProperty(key);
       if (value == null) {
           GitHub.warn("No URI mapped for key: " + key);
       }
       return Optional.ofNullable(value);
     }
+
+    /** Load the URI mapping once per process, configured via {@code -Duri-mapping-ttl=MINUTES}. */
+    Optional<Properties> loadUriMapping() {
+      synchronized (JavaNetWebsite.class) {
+        if (URI_MAPPING == null) {
+          var local = Store.of().root().resolve(URI_MAPPING_FILE);
+          var action = System.getenv("GITHUB_ACTION_PATH");
+          var bundled = Path.of(action == null ? "" : action, URI_MAPPING_FILE);
+          var ttl = Duration.ofMinutes(Integer.getInteger("uri-mapping-ttl", 60));
+          var uri = URI_MAPPING_URI;
+          var mapping =
+              Metrics.RUN.time(
+                  "uri-mapping", () -> loadUriMapping(browser, uri, local, bundled, ttl));
+          URI_MAPPING = mapping.orElse(null);
+        }
+        return Optional.ofNullable(URI_MAPPING);
+      }
+    }
+
+    /**
+     * Load the URI mapping from a local copy, revalidated with a conditional request once it is
+     * older than the given time-to-live, or from the file bundled with this action if neither the
+     * local copy nor the remote file is available.
+     */
+    static Optional<Properties> loadUriMapping(
+        Browser browser, String uri, Path local, Path bundled, Duration ttl) {
+      String source;
+      var file = local;
+      try {
+        var metadata = Metadata.load(local);
+        var validated = metadata.properties.getProperty("validated", "0");
+        var age = System.currentTimeMillis() - Long.parseLong(validated);
+        if (Files.exists(local) && age < ttl.toMillis()) {
+          source = "local copy, validated %d seconds ago".formatted(age / 1000);
+        } else {
+          var policy = RetryPolicy.of().withBudget(MAPPING_RETRY_BUDGET); // fall back early
+          source = policy.call(uri, () -> fetchUriMapping(browser, uri, local, metadata));
+        }
+      } catch (Exception exception) {
+        GitHub.debug("Fetching URI mapping failed: " + exception);
+        source = Files.exists(local) ? "stale local copy" : "bundled file";
+        if (Files.notExists(local)) file = bundled;
+      }
+      try (var reader = Files.newBufferedReader(file)) {
+        var mapping = new Properties();
+        mapping.load(reader);
+        GitHub.debug("URI mapping loaded from %s: %s".formatted(source, file.toUri()));
+        return Optional.of(mapping);
+      } catch (IOException exception) {
+        GitHub.warn("Caught exception: " + exception);
+        return Optional.empty();
+      }
+    }
+
+    /** Fetch the URI mapping unless the local copy is still current, returning the source. */
+    static String fetchUriMapping(Browser browser, String uri, Path local, Metadata metadata)
+        throws Exception {
+      var exists = Files.exists(local);
+      var etag = exists ? metadata.properties.getProperty("etag") : null;
+      var lastModified = exists ? metadata.properties.getProperty("last-modified") : null;
+      Files.createDirectories(local.getParent());
+      var file = Files.createTempFile(local.getParent(), URI_MAPPING_FILE, ".part");
+      try {
+        var response = browser.downloadIfModified(uri, file, etag, lastModified, null);
+        switch (response.statusCode()) {
+          case 200 -> {
+            Downloader.move(file, local);
+            metadata.recordValidators(response.headers());
+          }
+          case 304 -> {}
+          default -> throw new IOException("Unexpected " + response);
+        }
+        metadata.properties.setProperty("validated", String.valueOf(System.currentTimeMillis()));
+        metadata.store();
+        return response.statusCode() == 200 ? uri : "local copy, revalidated";
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
   }
 }
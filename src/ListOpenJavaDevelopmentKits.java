@@ -5,13 +5,25 @@
  * LICENSE.txt file in the root directory of this source tree.
  */
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -34,6 +46,11 @@ import java.util.stream.Stream;
  *   <li>{@code OS-NAME}: An operating system name, usually one of: `linux`, `macos`, `windows`
  *   <li>{@code OS-ARCH}: An operating system architecture, like: `aarch64`, `x64`, or `x64-musl`
  * </ul>
+ *
+ * <p>Pass {@code --incremental FILE} to update an existing properties file in place instead. The
+ * entity tags and last-modified dates of all pages are stored in {@code FILE.state}, unchanged
+ * pages are skipped via conditional requests, and a JSON diff of the added, removed, and changed
+ * keys is printed.
  */
 class ListOpenJavaDevelopmentKits {
   /** List of pages to visit and parse for JDK archives. */
@@ -76,16 +93,124 @@ class ListOpenJavaDevelopmentKits {
   static final Pattern KEY_PATTERN =
       Pattern.compile(".+?openjdk-(?<version>.+?)_(?<os>.+?)-(?<arch>.+?)_bin\\.(?<type>.+?)");
 
-  public static void main(String... args) {
+  /** Cheap test of a line before matching it against the regex-based patterns. */
+  static final String URI_PREFILTER = "download.java.net";
+
+  public static void main(String... args) throws Exception {
+    if (args.length == 2 && args[0].equals("--incremental")) {
+      update(Path.of(args[1]));
+      return;
+    }
     var pages = args.length == 1 ? List.of(Page.of(args[0])) : PAGES;
     var parser = new Parser();
-    for (var page : pages) {
-      var section = parser.parse(page);
-      System.out.println("#");
-      System.out.println("# " + page.address());
-      System.out.println("#");
-      section.map().forEach((key, uri) -> System.out.printf("%s=%s%n", key, uri));
+    var sections = new ArrayList<Future<Section>>();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var page : pages) sections.add(executor.submit(() -> parser.parse(page)));
+    }
+    var list = new ArrayList<Section>();
+    for (var future : sections) list.add(future.get()); // in order of pages, not of responses
+    print(System.out, list);
+  }
+
+  static void print(PrintStream out, List<Section> sections) {
+    for (var section : sections) {
+      out.println("#");
+      out.println("# " + section.page().address());
+      out.println("#");
+      section.map().forEach((key, uri) -> out.printf("%s=%s%n", key, uri));
+    }
+  }
+
+  /** Update a properties file with the sections of changed pages and print a JSON diff. */
+  static void update(Path file) throws Exception {
+    var stateFile = file.resolveSibling(file.getFileName() + ".state");
+    var state = new ConcurrentSkipListMap<>(readProperties(stateFile));
+    var previous = Files.exists(file) ? readSections(file) : Map.<String, Map<String, String>>of();
+    var parser = new Parser();
+    var changes = new ArrayList<Future<Optional<Section>>>();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var page : PAGES) {
+        var known = previous.containsKey(page.address()); // fetch missing sections in any case
+        changes.add(executor.submit(() -> parser.parseIfModified(page, state, known)));
+      }
+    }
+    var sections = new ArrayList<Section>();
+    for (int i = 0; i < PAGES.size(); i++) {
+      var page = PAGES.get(i);
+      var unchanged = new Section(page, previous.getOrDefault(page.address(), Map.of()));
+      sections.add(changes.get(i).get().orElse(unchanged));
+    }
+    try (var out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+      print(out, sections);
     }
+    writeProperties(stateFile, state);
+    var after = flatten(sections.stream().map(Section::map).toList());
+    System.out.println(diff(flatten(previous.values()), after));
+  }
+
+  /** Read the sections of a file printed by this program, keyed by the address of their page. */
+  static Map<String, Map<String, String>> readSections(Path file) throws IOException {
+    var sections = new LinkedHashMap<String, Map<String, String>>();
+    Map<String, String> map = new TreeMap<>();
+    for (var line : Files.readAllLines(file)) {
+      if (line.startsWith("# https://")) {
+        map = sections.computeIfAbsent(line.substring(2), address -> new TreeMap<>());
+        continue;
+      }
+      var separator = line.indexOf('=');
+      if (line.startsWith("#") || separator < 0) continue;
+      map.put(line.substring(0, separator), line.substring(separator + 1));
+    }
+    return sections;
+  }
+
+  static Map<String, String> readProperties(Path file) throws IOException {
+    var map = new TreeMap<String, String>();
+    if (Files.notExists(file)) return map;
+    for (var line : Files.readAllLines(file)) {
+      var separator = line.indexOf('=');
+      if (!line.startsWith("#") && separator > 0) {
+        map.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    }
+    return map;
+  }
+
+  /** Write sorted lines, keeping the file stable as long as its entries are unchanged. */
+  static void writeProperties(Path file, Map<String, String> map) throws IOException {
+    var lines = new TreeMap<>(map).entrySet().stream().map(e -> e.getKey() + '=' + e.getValue());
+    Files.write(file, lines.toList());
+  }
+
+  /** Merge the maps of sections like loading them as properties would, later ones winning. */
+  static Map<String, String> flatten(Iterable<Map<String, String>> maps) {
+    var flat = new TreeMap<String, String>();
+    maps.forEach(flat::putAll);
+    return flat;
+  }
+
+  /** Create a JSON object listing added, removed, and changed keys with their URIs. */
+  static String diff(Map<String, String> before, Map<String, String> after) {
+    var added = new StringJoiner(",", "{", "}");
+    var removed = new StringJoiner(",", "{", "}");
+    var changed = new StringJoiner(",", "{", "}");
+    for (var entry : after.entrySet()) {
+      var old = before.get(entry.getKey());
+      if (old == null) added.add(json(entry.getKey()) + ":" + json(entry.getValue()));
+      else if (!old.equals(entry.getValue())) {
+        var uris = "{\"old\":%s,\"new\":%s}".formatted(json(old), json(entry.getValue()));
+        changed.add(json(entry.getKey()) + ":" + uris);
+      }
+    }
+    for (var entry : before.entrySet()) {
+      if (after.containsKey(entry.getKey())) continue;
+      removed.add(json(entry.getKey()) + ":" + json(entry.getValue()));
+    }
+    return "{\"added\":%s,\"removed\":%s,\"changed\":%s}".formatted(added, removed, changed);
+  }
+
+  static String json(String string) {
+    return '"' + string.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
   }
 
   record Page(String name, List<String> aliases) {
@@ -109,39 +234,106 @@ class ListOpenJavaDevelopmentKits {
       this(HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build());
     }
 
-    String browse(String uri) {
+    /**
+     * Parse a page unless it is unchanged since the validators recorded in the given state.
+     *
+     * @param state validators of all pages, updated with the ones of a changed page
+     * @param conditional whether to send the recorded validators of the page
+     * @return the section of a changed page, or empty if the page is unchanged or unavailable
+     */
+    Optional<Section> parseIfModified(Page page, Map<String, String> state, boolean conditional) {
+      var etag = page.name() + ".etag";
+      var lastModified = page.name() + ".last-modified";
+      var builder = HttpRequest.newBuilder(URI.create(page.address()));
+      if (conditional && state.containsKey(etag)) builder.header("If-None-Match", state.get(etag));
+      if (conditional && state.containsKey(lastModified)) {
+        builder.header("If-Modified-Since", state.get(lastModified));
+      }
+      var lines =
+          HttpResponse.BodyHandlers.fromLineSubscriber(
+              new LineParser(page), LineParser::section, null);
+      HttpResponse.BodyHandler<Section> handler =
+          info ->
+              info.statusCode() == 200
+                  ? lines.apply(info)
+                  : HttpResponse.BodySubscribers.replacing(null);
       try {
-        var request = HttpRequest.newBuilder(URI.create(uri)).build();
-        return http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        var response = http.send(builder.build(), handler);
+        if (response.statusCode() == 304) return Optional.empty();
+        if (response.statusCode() != 200) throw new IOException("Unexpected " + response);
+        state.remove(etag);
+        state.remove(lastModified);
+        response.headers().firstValue("etag").ifPresent(value -> state.put(etag, value));
+        response.headers().firstValue("last-modified").ifPresent(v -> state.put(lastModified, v));
+        return Optional.of(response.body());
       } catch (Exception exception) {
-        return exception.toString();
+        System.err.println("// no page -> " + page.address() + ": " + exception);
+        return Optional.empty();
       }
     }
 
+    /** Parse the lines of a page while they are received, an unavailable page has no keys. */
     Section parse(Page page) {
-      var map = new TreeMap<String, String>();
-      var html = browse(page.address());
-      for (var line : html.lines().toList()) {
-        var uriMatcher = URI_PATTERN.matcher(line);
-        if (!uriMatcher.matches()) {
-          continue;
-        }
-        var uri = uriMatcher.group(1);
-        var keyMatcher = KEY_PATTERN.matcher(uri);
-        if (!keyMatcher.matches()) {
-          System.err.println("// no match -> " + uri);
-          continue;
-        }
-        var version = Runtime.Version.parse(keyMatcher.group("version"));
-        var os = keyMatcher.group("os");
-        var arch = keyMatcher.group("arch");
-        var platform = os.equals("osx") ? "macos" : os + "," + arch;
-        map.put(version.feature() + "," + version + "," + platform, uri);
-        for (var alias : page.aliases()) {
-          map.put(alias + "," + platform, uri);
-        }
+      var request = HttpRequest.newBuilder(URI.create(page.address())).build();
+      var handler =
+          HttpResponse.BodyHandlers.fromLineSubscriber(
+              new LineParser(page), LineParser::section, null);
+      try {
+        return http.send(request, handler).body();
+      } catch (Exception exception) {
+        System.err.println("// no page -> " + page.address() + ": " + exception);
+        return new Section(page, Map.of());
       }
+    }
+  }
+
+  /** Subscriber collecting the keys and URIs of download links in the lines of a page. */
+  static final class LineParser implements Flow.Subscriber<String> {
+    final Page page;
+    final Map<String, String> map = new TreeMap<>();
+
+    LineParser(Page page) {
+      this.page = page;
+    }
+
+    Section section() {
       return new Section(page, map);
     }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+      if (!line.contains(URI_PREFILTER)) {
+        return;
+      }
+      var uriMatcher = URI_PATTERN.matcher(line);
+      if (!uriMatcher.matches()) {
+        return;
+      }
+      var uri = uriMatcher.group(1);
+      var keyMatcher = KEY_PATTERN.matcher(uri);
+      if (!keyMatcher.matches()) {
+        System.err.println("// no match -> " + uri);
+        return;
+      }
+      var version = Runtime.Version.parse(keyMatcher.group("version"));
+      var os = keyMatcher.group("os");
+      var arch = keyMatcher.group("arch");
+      var platform = os.equals("osx") ? "macos" : os + "," + arch;
+      map.put(version.feature() + "," + version + "," + platform, uri);
+      for (var alias : page.aliases()) {
+        map.put(alias + "," + platform, uri);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {}
+
+    @Override
+    public void onComplete() {}
   }
 }
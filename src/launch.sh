@@ -0,0 +1,123 @@
+#!/usr/bin/env bash
+#
+# Copyright (c) 2026, Oracle and/or its affiliates.
+#
+# This source code is licensed under the UPL license found in the
+# LICENSE.txt file in the root directory of this source tree.
+#
+
+#
+# Launch a single-file program of this action from a precompiled jar, instead of compiling its
+# source file in memory on every launch.
+#
+# Usage: launch.sh JAVA SOURCE [OPTION...] -- [ARGUMENT...]
+#
+# The jar is compiled once per source file and Java runtime, and cached in the directory given by
+# SETUP_JAVA_LAUNCHER_CACHE, defaulting to ~/.oracle-actions/launcher. On Java 19 and later, the
+# first launch from the jar also records a dynamic AppCDS archive next to it, which later launches
+# map to skip loading and verifying the program's classes again. The archive is recreated by the
+# JVM whenever it doesn't match the runtime. If the jar can't be built, or SETUP_JAVA_LAUNCHER is
+# set to `source`, the source file is launched as usual. Set it to `jar` to launch the jar without
+# the archive, or to `cds` to always build and use both.
+#
+# By default, or if set to `auto`, GitHub-hosted runners without a cached jar download the jar that
+# the release workflow built from the same source file, named after its checksum, and launch it
+# without recording the archive: their cache starts empty, so building the jar and recording the
+# archive would only slow down the first, and usually only, launch of a job. The jar is only used
+# if its checksum matches the checksum file published next to it, otherwise, or if no jar was
+# released for the source file, the source file is launched. The jar is downloaded from the
+# directory given by SETUP_JAVA_LAUNCHER_URL, defaulting to the `launcher` release of this
+# action's repository. Other runners build the jar and record the archive, as with `cds`.
+#
+
+set -o errexit -o nounset -o pipefail
+
+java=$1
+source=$2
+shift 2
+options=()
+while [ $# -gt 0 ] && [ "$1" != "--" ]; do
+  options+=("$1")
+  shift
+done
+[ $# -gt 0 ] && shift # --
+
+launch_source() {
+  exec "$java" ${options[@]+"${options[@]}"} "$source" "$@"
+}
+
+# Convert a path for the Java runtime, which expects a Windows path on Windows runners
+native_path() {
+  if command -v cygpath > /dev/null; then cygpath --windows "$1"; else printf '%s' "$1"; fi
+}
+
+hash() {
+  if command -v sha256sum > /dev/null; then sha256sum; else shasum --algorithm 256; fi
+}
+
+# Download the released jar of the source file, keeping it only if its checksum matches
+fetch_jar() {
+  local base=https://github.com/oracle-actions/setup-java/releases/download/launcher
+  local file temporary actual expected
+  base=${SETUP_JAVA_LAUNCHER_URL:-$base}
+  file=$name-$(hash < "$source" | cut -c 1-16).jar
+  command -v curl > /dev/null || return 0
+  mkdir -p "$directory"
+  temporary=$(mktemp -d "$directory/fetch.XXXXXX")
+  if curl --fail --silent --location --max-time 10 --output "$temporary/$file" "$base/$file" \
+      && curl --fail --silent --location --max-time 10 --output "$temporary/$file.sha256" \
+          "$base/$file.sha256"; then
+    actual=$(hash < "$temporary/$file" | cut -c 1-64)
+    expected=$(cut -c 1-64 "$temporary/$file.sha256")
+    # Atomically, another job may launch it concurrently
+    [ "$actual" = "$expected" ] && mv -f "$temporary/$file" "$jar"
+  fi
+  rm -rf "$temporary"
+}
+
+mode=${SETUP_JAVA_LAUNCHER:-auto}
+[ "$mode" = "source" ] && launch_source "$@"
+
+# Identify the runtime by its release file, avoiding the startup of another JVM
+release=$(dirname "$java")/../release
+if [ -f "$release" ]; then version=$(cat "$release"); else version=$("$java" -version 2>&1); fi
+key=$( { cat "$source"; printf '%s' "$version"; } | hash | cut -c 1-16) || launch_source "$@"
+name=$(basename "$source" .java)
+cache=${SETUP_JAVA_LAUNCHER_CACHE:-$HOME/.oracle-actions/launcher}
+directory=$cache/$name-$key
+jar=$directory/$name.jar
+
+if [ "$mode" = "auto" ]; then
+  mode=cds
+  if [ ! -f "$jar" ] && [ "${RUNNER_ENVIRONMENT:-}" = "github-hosted" ]; then
+    fetch_jar
+    [ -f "$jar" ] || launch_source "$@"
+    mode=jar
+  fi
+fi
+
+if [ ! -f "$jar" ]; then
+  bin=$(dirname "$java")
+  mkdir -p "$directory"
+  temporary=$(mktemp -d "$directory/build.XXXXXX")
+  # Errors are reported by launching the source file instead
+  if "$bin/javac" -nowarn -d "$(native_path "$temporary/classes")" "$(native_path "$source")" \
+      && "$bin/jar" --create --file "$(native_path "$temporary/$name.jar")" \
+          --main-class "$name" -C "$(native_path "$temporary/classes")" . ; then
+    mv -f "$temporary/$name.jar" "$jar" # atomically, another job may launch it concurrently
+  fi 2> /dev/null
+  rm -rf "$temporary"
+  [ -f "$jar" ] || launch_source "$@"
+fi
+
+sharing=()
+pattern='s/^(JAVA_VERSION=|[^"]* version )"(1\.)?([0-9]+).*/\3/p'
+feature=$(printf '%s\n' "$version" | sed -n -E "$pattern" | head -n 1)
+if [ "${feature:-0}" -ge 19 ] && [ "$mode" != "jar" ]; then
+  archive=$(native_path "$directory/$name.jsa")
+  sharing=(-XX:+AutoCreateSharedArchive "-XX:SharedArchiveFile=$archive" -Xshare:auto)
+  sharing+=(-Xlog:cds=off -Xlog:cds+dynamic=off) # JFR event classes are never archived
+fi
+
+exec "$java" ${sharing[@]+"${sharing[@]}"} ${options[@]+"${options[@]}"} \
+    -cp "$(native_path "$jar")" "$name" "$@"
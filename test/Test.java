@@ -5,18 +5,84 @@
  * LICENSE.txt file in the root directory of this source tree.
  */
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import jdk.jfr.consumer.RecordingFile;
 
 public class Test {
 
   static Download.Browser BROWSER = new Download.Browser();
   static ArrayList<String> ERRORS = new ArrayList<>();
 
-  public static void main(String[] args) {
+  /** Local server standing in for all hosts of the availability matrix, enabled via -Dstub. */
+  static /*lazy*/ Stub MATRIX_STUB = null;
+
+  public static void main(String[] args) throws Exception {
+    if (Boolean.getBoolean("stub")) {
+      var mapping = new Properties(); // the bundled file instead of the one on the main branch
+      try (var reader = Files.newBufferedReader(Path.of("jdk.java.net-uri.properties"))) {
+        mapping.load(reader);
+      }
+      Download.JavaNetWebsite.URI_MAPPING = mapping;
+      MATRIX_STUB = new Stub(true);
+    }
     checkAllOracleJDKs();
     checkAllJavaNetJDKs();
+    if (MATRIX_STUB != null) MATRIX_STUB.close();
     checkUnsupportedInputs();
+    checkLocalDownloads();
+    checkRoundTrips();
+    checkExtraction();
+    checkZipExtraction();
+    checkUriMapping();
+    checkUriListing();
+    checkStorePruning();
+    checkFlightRecording();
+    checkStallDetection();
+    checkRetryPolicy();
+    checkMetrics();
+    checkMirrors();
+    checkProxy();
+    checkBatch();
 
     if (ERRORS.isEmpty()) return;
 
@@ -27,86 +93,138 @@ public class Test {
   }
 
   static void checkAllOracleJDKs() {
-    System.out.println();
-    System.out.println("// oracle.com - latest");
-    checkOracleJDK("26", "latest");
-    checkOracleJDK("25", "latest");
-    checkOracleJDK("21", "latest");
+    try (var matrix = new Matrix()) {
+      matrix.println();
+      matrix.println("// oracle.com - latest");
+      checkOracleJDK(matrix, "26", "latest");
+      checkOracleJDK(matrix, "25", "latest");
+      checkOracleJDK(matrix, "21", "latest");
 
-    System.out.println();
-    System.out.println("// oracle.com - archive");
-    Stream.of("25", "25.0.1", "25.0.2").forEach(version -> checkOracleJDK("25", version));
-    Stream.of("21", "21.0.1", "21.0.2", "21.0.10").forEach(version -> checkOracleJDK("21", version));
-    /*
-     * The Oracle Technology Network License Agreement for Oracle Java SE used for
-     * JDK 17 updates 17.0.13 and greater is substantially different from prior
-     * Oracle JDK 17 licenses.
-     */
-    Stream.of("17", "17.0.1", "17.0.2", "17.0.12").forEach(version -> checkOracleJDK("17", version));
+      matrix.println();
+      matrix.println("// oracle.com - archive");
+      Stream.of("25", "25.0.1", "25.0.2").forEach(version -> checkOracleJDK(matrix, "25", version));
+      Stream.of("21", "21.0.1", "21.0.2", "21.0.10")
+          .forEach(version -> checkOracleJDK(matrix, "21", version));
+      /*
+       * The Oracle Technology Network License Agreement for Oracle Java SE used for
+       * JDK 17 updates 17.0.13 and greater is substantially different from prior
+       * Oracle JDK 17 licenses.
+       */
+      Stream.of("17", "17.0.1", "17.0.2", "17.0.12")
+          .forEach(version -> checkOracleJDK(matrix, "17", version));
+    }
   }
 
   static void checkAllJavaNetJDKs() {
-    System.out.println();
-    System.out.println("// jdk.java.net - GA - latest");
-    checkJavaNetJDK("ga", "latest");
+    try (var matrix = new Matrix()) {
+      matrix.println();
+      matrix.println("// jdk.java.net - GA - latest");
+      checkJavaNetJDK(matrix, "ga", "latest");
 
-    System.out.println();
-    System.out.println("// jdk.java.net - EA - latest");
-    checkJavaNetJDK("ea", "latest");
-    System.out.println("// jdk.java.net - EA - stable");
-    checkJavaNetJDK("ea", "stable");
+      matrix.println();
+      matrix.println("// jdk.java.net - EA - latest");
+      checkJavaNetJDK(matrix, "ea", "latest");
+      matrix.println("// jdk.java.net - EA - stable");
+      checkJavaNetJDK(matrix, "ea", "stable");
 
-    System.out.println();
-    System.out.println("// jdk.java.net - Project Jextract - latest");
-    checkJavaNetJDK("jextract", "latest");
+      matrix.println();
+      matrix.println("// jdk.java.net - Project Jextract - latest");
+      checkJavaNetJDK(matrix, "jextract", "latest");
 
-    System.out.println();
-    System.out.println("// jdk.java.net - Project Leyden - latest");
-    // checkJavaNetJDK("leyden", "latest"); // only the following binaries are available
-    checkJDK("jdk.java.net", new Download.JDK("leyden", "latest", "linux", "aarch64", "tar.gz"));
-    checkJDK("jdk.java.net", new Download.JDK("leyden", "latest", "linux", "x64", "tar.gz"));
-    checkJDK("jdk.java.net", new Download.JDK("leyden", "latest", "macos", "aarch64", "tar.gz"));
+      matrix.println();
+      matrix.println("// jdk.java.net - Project Leyden - latest");
+      // checkJavaNetJDK("leyden", "latest"); // only the following binaries are available
+      matrix.check(
+          "jdk.java.net", new Download.JDK("leyden", "latest", "linux", "aarch64", "tar.gz"));
+      matrix.check("jdk.java.net", new Download.JDK("leyden", "latest", "linux", "x64", "tar.gz"));
+      matrix.check(
+          "jdk.java.net", new Download.JDK("leyden", "latest", "macos", "aarch64", "tar.gz"));
 
-    System.out.println();
-    System.out.println("// jdk.java.net - Project Loom - latest");
-    checkJavaNetJDK("loom", "latest");
+      matrix.println();
+      matrix.println("// jdk.java.net - Project Loom - latest");
+      checkJavaNetJDK(matrix, "loom", "latest");
 
-    System.out.println();
-    System.out.println("// jdk.java.net - Project Valhalla - latest");
-    checkJavaNetJDK("valhalla", "latest");
+      matrix.println();
+      matrix.println("// jdk.java.net - Project Valhalla - latest");
+      checkJavaNetJDK(matrix, "valhalla", "latest");
+    }
   }
 
-  static void checkOracleJDK(String release, String version) {
-    checkJDK("oracle.com", new Download.JDK(release, version, "linux", "aarch64", "tar.gz"));
-    checkJDK("oracle.com", new Download.JDK(release, version, "linux", "x64", "tar.gz"));
-    checkJDK("oracle.com", new Download.JDK(release, version, "macos", "aarch64", "tar.gz"));
-    checkJDK("oracle.com", new Download.JDK(release, version, "windows", "x64", "zip"));
+  static void checkOracleJDK(Matrix matrix, String release, String version) {
+    matrix.check("oracle.com", new Download.JDK(release, version, "linux", "aarch64", "tar.gz"));
+    matrix.check("oracle.com", new Download.JDK(release, version, "linux", "x64", "tar.gz"));
+    matrix.check("oracle.com", new Download.JDK(release, version, "macos", "aarch64", "tar.gz"));
+    matrix.check("oracle.com", new Download.JDK(release, version, "windows", "x64", "zip"));
   }
 
-  static void checkJavaNetJDK(String release, String version) {
-    checkJDK("jdk.java.net", new Download.JDK(release, version, "linux", "aarch64", "tar.gz"));
-    checkJDK("jdk.java.net", new Download.JDK(release, version, "linux", "x64", "tar.gz"));
-    checkJDK("jdk.java.net", new Download.JDK(release, version, "macos", "aarch64", "tar.gz"));
-    checkJDK("jdk.java.net", new Download.JDK(release, version, "windows", "x64", "zip"));
+  static void checkJavaNetJDK(Matrix matrix, String release, String version) {
+    matrix.check("jdk.java.net", new Download.JDK(release, version, "linux", "aarch64", "tar.gz"));
+    matrix.check("jdk.java.net", new Download.JDK(release, version, "linux", "x64", "tar.gz"));
+    matrix.check("jdk.java.net", new Download.JDK(release, version, "macos", "aarch64", "tar.gz"));
+    matrix.check("jdk.java.net", new Download.JDK(release, version, "windows", "x64", "zip"));
   }
 
-  static void checkJDK(String website, Download.JDK jdk) {
-    System.out.println(website + " << " + jdk);
-    var finder = Download.Website.find(website).orElseThrow();
+  /** Report and errors of a single check, collected while checks run concurrently. */
+  record Report(String text, List<String> errors) {}
+
+  static Report checkJDK(String website, Download.JDK jdk) {
+    var text = new StringBuilder(website + " << " + jdk + "\n");
+    var errors = new ArrayList<String>();
+    var finder = Download.Website.find(website, BROWSER).orElseThrow();
     var uri = finder.findUri(jdk).orElseThrow();
     try {
+      if (MATRIX_STUB != null) uri = MATRIX_STUB.mirror(uri);
       var head = BROWSER.head(uri);
-      if (head.statusCode() < 200 || head.statusCode() >= 400) ERRORS.add(head.toString());
-      System.out.println(head);
+      if (head.statusCode() < 200 || head.statusCode() >= 400) errors.add(head.toString());
+      text.append(head).append('\n');
       var sha = BROWSER.head(uri + ".sha256");
-      System.out.println(sha);
+      text.append(sha).append('\n');
       if (sha.statusCode() >= 200 && sha.statusCode() < 400) {
-          System.out.println("  --> " + BROWSER.browse(uri + ".sha256"));
+          text.append("  --> ").append(BROWSER.browse(uri + ".sha256")).append('\n');
       } else {
-          System.out.println("  --> <?>");
+          text.append("  --> <?>\n");
       }
     } catch (Exception exception) {
-      ERRORS.add(jdk + "\n" + exception);
+      errors.add(jdk + "\n" + exception);
+    }
+    return new Report(text.toString(), errors);
+  }
+
+  /**
+   * Availability matrix running its checks concurrently on virtual threads, printing their reports
+   * and collecting their errors in order of submission when closed.
+   */
+  static final class Matrix implements AutoCloseable {
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    final List<Future<Report>> reports = new ArrayList<>();
+    final long start = System.nanoTime();
+
+    void println() {
+      println("");
+    }
+
+    void println(String line) {
+      reports.add(CompletableFuture.completedFuture(new Report(line + "\n", List.of())));
+    }
+
+    void check(String website, Download.JDK jdk) {
+      reports.add(executor.submit(() -> checkJDK(website, jdk)));
+    }
+
+    @Override
+    public void close() {
+      executor.close();
+      for (var future : reports) {
+        try {
+          var report = future.get();
+          System.out.print(report.text());
+          ERRORS.addAll(report.errors());
+        } catch (Exception exception) {
+          ERRORS.add("Check failed: " + exception);
+        }
+      }
+      var millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+      System.out.printf("// %d entries checked in %d ms%n", reports.size(), millis);
     }
   }
 
@@ -116,6 +234,1171 @@ public class Test {
     assertThrows(() -> Download.main(true), "Usage:");
     assertThrows(() -> Download.main(true, "website"), "Could not find website for website");
     assertThrows(() -> Download.main(true, "oracle.com", "0"), "Could not find URI of JDK");
+    assertThrows(() -> Download.main(true, "batch"), "Usage:");
+    assertThrows(() -> Download.main(true, "batch", "website,26"), "Could not find website for");
+    assertThrows(() -> Download.main(true, "batch", "oracle.com,0"), "Could not find URI of JDK");
+    System.setProperty("concurrency", "0");
+    try {
+      assertThrows(() -> Download.main(true, "batch", "oracle.com,26"), "concurrency < 1");
+    } finally {
+      System.clearProperty("concurrency");
+    }
+    var json = Download.GitHub.toJsonArray(List.of("C:\\jdk \"26\"", "/jdk"));
+    assertTrue(json.equals("[\"C:\\\\jdk \\\"26\\\"\",\"/jdk\"]"), "Unexpected JSON: " + json);
+  }
+
+  static void checkLocalDownloads() {
+    System.out.println();
+    System.out.println("// Check downloads from a local server");
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 1_234_567);
+      for (var segments : new int[] {2, 3, 8}) {
+        var file = Files.createTempFile("download-", ".tar.gz");
+        var responses = BROWSER.download(stub.uri("/jdk.tar.gz"), file, bytes.length, segments);
+        assertTrue(responses.size() == segments, "Expected %d responses".formatted(segments));
+        assertTrue(Arrays.equals(bytes, Files.readAllBytes(file)), "Segmented content differs");
+        Files.delete(file);
+      }
+    } catch (Exception exception) {
+      ERRORS.add("Segmented download failed: " + exception);
+    }
+    try (var stub = new Stub(false)) {
+      stub.add("/jdk.tar.gz", 12_345);
+      var file = Files.createTempFile("download-", ".tar.gz");
+      BROWSER.download(stub.uri("/jdk.tar.gz"), file, 12_345, 4);
+      ERRORS.add("Segmented download without range support should fail");
+    } catch (IOException expected) {
+      System.out.println("Caught expected: " + expected);
+    } catch (Exception exception) {
+      ERRORS.add("Unexpected exception: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 654_321);
+      var head = BROWSER.head(stub.uri("/jdk.tar.gz"));
+      var validator = Download.Browser.computeValidator(head.headers());
+      assertTrue(validator.isPresent(), "Validator expected");
+      var file = Files.createTempFile("download-", ".tar.gz.part");
+      var expected = new Download.Hasher();
+      expected.update(ByteBuffer.wrap(bytes));
+      var checksum = expected.checksum();
+      Files.write(file, Arrays.copyOf(bytes, 100_000));
+      var hasher = new Download.Hasher();
+      var resumed = BROWSER.download(stub.uri("/jdk.tar.gz"), file, validator.get(), hasher);
+      assertTrue(resumed.statusCode() == 206, "Resumed download expected: " + resumed);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(file)), "Resumed content differs");
+      assertTrue(checksum.equals(hasher.checksum()), "Resumed checksum differs");
+      Files.write(file, new byte[100_000]);
+      hasher = new Download.Hasher();
+      hasher.update(ByteBuffer.wrap(new byte[100_000]));
+      var restarted = BROWSER.download(stub.uri("/jdk.tar.gz"), file, "\"outdated\"", hasher);
+      assertTrue(restarted.statusCode() == 200, "Restarted download expected: " + restarted);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(file)), "Restarted content differs");
+      assertTrue(checksum.equals(hasher.checksum()), "Restarted checksum differs");
+      var segments = Download.Segment.split(bytes.length, 4);
+      Files.write(file, Arrays.copyOf(bytes, 200_000));
+      segments.get(0).position = 100_000;
+      segments.get(1).position = segments.get(1).end + 1; // pretend it's complete
+      var requests = stub.requests.get();
+      BROWSER.downloadSegments(stub.uri("/jdk.tar.gz"), file, segments, validator.get());
+      assertTrue(stub.requests.get() - requests == 3, "Expected 3 segment requests");
+      var actual = Files.readAllBytes(file);
+      assertTrue(Arrays.equals(bytes, 0, 100_000, actual, 0, 100_000), "Resumed segment differs");
+      assertTrue(actual.length == bytes.length, "Unexpected size after resuming segments");
+      Files.delete(file);
+    } catch (Exception exception) {
+      ERRORS.add("Resumed download failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 543_210);
+      var archive = computeArchivePath(stub.uri("/jdk.tar.gz"));
+      var downloader = new Download.Downloader(archive, stub.uri("/jdk.tar.gz"));
+      downloader.downloadArchive(false);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Archive content differs");
+      assertTrue(Files.notExists(downloader.partial), "Partial file not renamed");
+      var checksum = downloader.computeChecksum(archive);
+      assertTrue(checksum.equals(downloader.streamedChecksum), "Streamed checksum differs");
+    } catch (Exception exception) {
+      ERRORS.add("Archive download failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 123_456);
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      var first = new Download.Downloader(archive, uri);
+      var second = new Download.Downloader(archive, uri);
+      assertTrue(!first.partial.equals(second.partial), "Concurrent runs share a partial file");
+      Files.createDirectories(archive.getParent());
+      var abandoned = archive.resolveSibling(archive.getFileName() + ".part");
+      Files.write(abandoned, new byte[42]);
+      Files.setLastModifiedTime(abandoned, FileTime.fromMillis(0));
+      Files.write(second.partial, new byte[42]); // being written by a concurrent run
+      first.downloadArchive(false);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Archive content differs");
+      assertTrue(Files.notExists(abandoned), "Abandoned partial file not deleted");
+      assertTrue(Files.size(second.partial) == 42, "Partial file of another run touched");
+    } catch (Exception exception) {
+      ERRORS.add("Concurrent archive download failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 123_456);
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      var store = Download.Store.of(archive);
+      var directory = store.root().resolve(Integer.toHexString(uri.hashCode()));
+      var legacy = Files.createDirectories(directory).resolve("jdk.tar.gz");
+      Files.write(legacy, bytes); // cached by a version before the store
+      new Download.Downloader(archive, uri).acquireArchive(uri + ".sha256", false, false);
+      assertTrue(stub.transfers.get() == 0, "Legacy archive expected to be adopted");
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Adopted content differs");
+      assertTrue(Files.notExists(directory), "Legacy directory expected to be deleted");
+      var checksum = Download.Metadata.load(archive).findVerifiedChecksum(uri);
+      assertTrue(checksum != null, "Adopted archive expected to be verified");
+    } catch (Exception exception) {
+      ERRORS.add("Adopting a legacy archive failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      stub.add("/jdk.tar.gz", 345_678);
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      var downloader = new Download.Downloader(archive, uri);
+      downloader.downloadArchive(false);
+      downloader.verifyChecksums(uri + ".sha256", false);
+      var requests = stub.requests.get();
+      new Download.Downloader(archive, uri).verifyChecksums(uri + ".sha256", false);
+      assertTrue(stub.requests.get() == requests, "Recorded checksum should skip remote requests");
+      new Download.Downloader(archive, uri).verifyChecksums(uri + ".sha256", true);
+      assertTrue(stub.requests.get() > requests, "Moving resource should fetch remote checksum");
+      requests = stub.requests.get();
+      System.setProperty("paranoid", "true");
+      try {
+        new Download.Downloader(archive, uri).verifyChecksums(uri + ".sha256", false);
+      } finally {
+        System.clearProperty("paranoid");
+      }
+      assertTrue(stub.requests.get() > requests, "Paranoid mode should fetch remote checksum");
+      Files.write(archive, new byte[345_678]);
+      assertThrows(
+          () -> {
+            try {
+              new Download.Downloader(archive, uri).verifyChecksums(uri + ".sha256", false);
+            } catch (Exception exception) {
+              throw new RuntimeException(exception);
+            }
+          },
+          "Checksum verification failed");
+      assertTrue(Files.notExists(archive), "Modified archive should be deleted");
+    } catch (Exception exception) {
+      ERRORS.add("Checksum verification failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      stub.add("/latest/jdk.tar.gz", 456_789);
+      var uri = stub.uri("/latest/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      var downloader = new Download.Downloader(archive, uri);
+      downloader.downloadArchive(false);
+      downloader.verifyChecksums(uri + ".sha256", true);
+      var requests = stub.requests.get();
+      var revalidator = new Download.Downloader(archive, uri);
+      revalidator.revalidateArchive(false);
+      revalidator.verifyChecksums(uri + ".sha256", true);
+      assertTrue(revalidator.unmodified, "Cached archive expected to be unmodified");
+      assertTrue(stub.requests.get() - requests == 1, "Expected a single conditional request");
+      stub.failures.put("/latest/jdk.tar.gz", 1);
+      revalidator = new Download.Downloader(archive, uri);
+      revalidator.revalidateArchive(false);
+      assertTrue(revalidator.unmodified, "Failed revalidation expected to be retried");
+      stub.failures.put("/latest/jdk.tar.gz", 2);
+      System.setProperty("retry-attempts", "2");
+      try {
+        revalidator = new Download.Downloader(archive, uri);
+        revalidator.revalidateArchive(false);
+      } finally {
+        System.clearProperty("retry-attempts");
+      }
+      assertTrue(Files.exists(archive), "Cached archive expected to be kept after failures");
+      assertTrue(!revalidator.unmodified, "Failed revalidation must not confirm the archive");
+      var bytes = new byte[456_789]; // same size, different content
+      new Random(0).nextBytes(bytes);
+      stub.add("/latest/jdk.tar.gz", bytes);
+      revalidator = new Download.Downloader(archive, uri);
+      revalidator.revalidateArchive(false);
+      revalidator.downloadArchive(false);
+      revalidator.verifyChecksums(uri + ".sha256", true);
+      assertTrue(!revalidator.unmodified, "Cached archive expected to be modified");
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Replaced content differs");
+    } catch (Exception exception) {
+      ERRORS.add("Revalidation failed: " + exception);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/archive/jdk-26.0.2.tar.gz", 234_567);
+      stub.add("/latest/jdk-26.tar.gz", bytes);
+      var store = new Download.Store(Files.createTempDirectory("store-"));
+      var uri = stub.uri("/archive/jdk-26.0.2.tar.gz");
+      var archive = store.computeArchivePath(uri);
+      var downloader = new Download.Downloader(archive, uri);
+      downloader.downloadArchive(false);
+      downloader.verifyChecksums(uri + ".sha256", false);
+      var blob = store.computeBlobPath(downloader.streamedChecksum, archive);
+      assertTrue(Files.isSameFile(archive, blob), "Verified archive expected in store");
+      var requests = stub.requests.get();
+      var alias = stub.uri("/latest/jdk-26.tar.gz");
+      var linked = store.computeArchivePath(alias);
+      var linker = new Download.Downloader(linked, alias);
+      linker.linkArchiveFromStore(alias + ".sha256", true);
+      linker.downloadArchive(false);
+      linker.verifyChecksums(alias + ".sha256", true);
+      assertTrue(Files.isSameFile(linked, blob), "Alias expected to link stored archive");
+      assertTrue(stub.requests.get() - requests == 1, "Expected only a checksum request");
+      Files.delete(archive);
+      requests = stub.requests.get();
+      var relinker = new Download.Downloader(archive, uri);
+      relinker.linkArchiveFromStore(uri + ".sha256", false);
+      relinker.verifyChecksums(uri + ".sha256", false);
+      assertTrue(Files.isSameFile(archive, blob), "Recorded checksum expected to link archive");
+      assertTrue(stub.requests.get() == requests, "Expected no requests for recorded checksum");
+      Files.write(blob, new byte[bytes.length]); // corrupt the stored bytes in place
+      Files.delete(linked);
+      var corrupt = new Download.Downloader(linked, alias);
+      corrupt.linkArchiveFromStore(alias + ".sha256", true);
+      assertTrue(Files.isSameFile(linked, blob), "Alias expected to link corrupt archive");
+      System.setProperty("paranoid", "true");
+      try {
+        assertThrows(
+            () -> {
+              try {
+                corrupt.verifyChecksums(alias + ".sha256", true);
+              } catch (Exception exception) {
+                throw new RuntimeException(exception);
+              }
+            },
+            "Checksum verification failed");
+      } finally {
+        System.clearProperty("paranoid");
+      }
+      assertTrue(Files.notExists(blob), "Corrupt stored archive expected to be deleted");
+      var recovered = new Download.Downloader(linked, alias);
+      recovered.linkArchiveFromStore(alias + ".sha256", true);
+      recovered.downloadArchive(false);
+      recovered.verifyChecksums(alias + ".sha256", true);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(linked)), "Recovered content differs");
+    } catch (Exception exception) {
+      ERRORS.add("Content-addressed store failed: " + exception);
+    }
+  }
+
+  static void checkRoundTrips() {
+    System.out.println();
+    System.out.println("// Check round trips of acquiring an archive");
+    for (var ranges : new boolean[] {true, false}) {
+      for (var segments : new int[] {1, 3}) {
+        try (var stub = new Stub(ranges)) {
+          var bytes = stub.add("/jdk.tar.gz", 765_432);
+          var uri = stub.uri("/jdk.tar.gz");
+          var archive = computeArchivePath(uri);
+          var browser = new Download.Browser();
+          System.setProperty("download-segments", String.valueOf(segments));
+          try {
+            var downloader = new Download.Downloader(archive, uri, browser);
+            downloader.acquireArchive(uri + ".sha256", false, false);
+          } finally {
+            System.clearProperty("download-segments");
+          }
+          var expected = 1 + (ranges ? segments : 1); // checksum and archive requests
+          var format = "Expected %d requests with ranges=%s and segments=%d, but got: %d";
+          var actual = browser.requests.get();
+          assertTrue(actual == expected, format.formatted(expected, ranges, segments, actual));
+          assertTrue(stub.requests.get() == expected, "Stub counted other requests");
+          assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Archive content differs");
+        } catch (Exception exception) {
+          ERRORS.add("Round trips with ranges=%s failed: %s".formatted(ranges, exception));
+        }
+      }
+    }
+    try (var stub = new Stub(true)) {
+      var uri = stub.uri("/jdk.tar.gz");
+      stub.files.put("/jdk.tar.gz", new byte[12_345]);
+      var archive = computeArchivePath(uri);
+      var downloader = new Download.Downloader(archive, uri, new Download.Browser());
+      assertTrue(downloader.findRemoteChecksum(uri + ".sha256").isEmpty(), "Expected no checksum");
+      assertTrue(downloader.browser.requests.get() == 1, "Expected a single checksum request");
+    } catch (Exception exception) {
+      ERRORS.add("Missing checksum failed: " + exception);
+    }
+  }
+
+  static void checkExtraction() {
+    System.out.println();
+    System.out.println("// Check extraction of archives");
+    var longName = "jdk-26/" + "legal/".repeat(20) + "LICENSE";
+    var entries =
+        List.of(
+            new TarEntry("jdk-26/", '5', 0755, ""),
+            new TarEntry("jdk-26/bin/java", '0', 0755, "#!/bin/sh"),
+            new TarEntry("jdk-26/release", '0', 0644, "JAVA_VERSION=\"26\"\n".repeat(100)),
+            new TarEntry("jdk-26/lib/java", '2', 0777, "../bin/java"),
+            new TarEntry(longName, '0', 0644, "license"));
+    try (var stub = new Stub(true)) {
+      stub.add("/jdk.tar.gz", createTarGz(entries));
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      System.setProperty("extract", "true");
+      try {
+        var downloader = new Download.Downloader(archive, uri);
+        downloader.acquireArchive(uri + ".sha256", false, false);
+        var home = downloader.extractArchive();
+        var streamed = downloader.extraction.state() == Future.State.SUCCESS;
+        assertTrue(streamed, "Expected extraction while downloading");
+        checkExtractedHome(home, longName);
+        var marker = Download.Store.computeMarker(home.getParent());
+        assertTrue(Files.exists(marker), "Completion marker expected: " + marker);
+        var sentinel = Files.writeString(home.resolve("sentinel"), "not extracted again");
+        var cached = new Download.Downloader(archive, uri);
+        cached.acquireArchive(uri + ".sha256", false, false);
+        assertTrue(cached.extraction == null, "Cached archive expected not to be streamed");
+        assertTrue(cached.extractArchive().equals(home), "Cached home expected");
+        assertTrue(Files.exists(sentinel), "Completely extracted home expected to be reused");
+        Files.delete(marker); // pretend extraction was interrupted
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+          var homes = new ArrayList<Future<Path>>();
+          for (int i = 0; i < 3; i++) {
+            var extractor = new Download.Downloader(archive, uri);
+            homes.add(executor.submit(extractor::extractArchive));
+          }
+          for (var future : homes) assertTrue(future.get().equals(home), "Shared home expected");
+        }
+        assertTrue(Files.notExists(sentinel), "Incomplete home expected to be extracted again");
+        checkExtractedHome(home, longName);
+        stub.files.put("/jdk.tar.gz.sha256", "0".repeat(64).getBytes()); // tampered checksum
+        var rejected = computeArchivePath(uri);
+        var homes = Files.createDirectories(Download.Store.of(rejected).root().resolve("homes"));
+        try {
+          new Download.Downloader(rejected, uri).acquireArchive(uri + ".sha256", false, false);
+          ERRORS.add("Archive with a wrong checksum should be rejected");
+        } catch (AssertionError expected) {
+          try (var directories = Files.list(homes)) {
+            assertTrue(directories.findAny().isEmpty(), "Expected extracted directory deleted");
+          }
+        }
+      } finally {
+        System.clearProperty("extract");
+      }
+    } catch (Exception exception) {
+      ERRORS.add("Streamed extraction failed: " + exception);
+    }
+    try {
+      var zip = Files.createTempFile("jdk-", ".zip");
+      try (var output = new ZipOutputStream(Files.newOutputStream(zip))) {
+        output.putNextEntry(new ZipEntry("jdk-26/bin/java.exe"));
+        output.write("#!/bin/sh".getBytes());
+        output.putNextEntry(new ZipEntry("jdk-26/release"));
+        output.write("JAVA_VERSION=\"26\"\n".repeat(100).getBytes());
+      }
+      var directory = Files.createTempDirectory("home-");
+      Download.Extractor.extract(zip, directory);
+      var home = Download.Extractor.findHome(directory);
+      assertTrue(home.getFileName().toString().equals("jdk-26"), "Unexpected home: " + home);
+      assertTrue(Files.exists(home.resolve("bin/java.exe")), "Extracted executable expected");
+    } catch (Exception exception) {
+      ERRORS.add("Zip extraction failed: " + exception);
+    }
+    assertThrows(
+        () -> {
+          try {
+            var evil = List.of(new TarEntry("../evil", '0', 0644, "evil"));
+            var input = new GZIPInputStream(new ByteArrayInputStream(createTarGz(evil)));
+            Download.Extractor.untar(input, Files.createTempDirectory("home-"));
+          } catch (IOException exception) {
+            throw new RuntimeException(exception);
+          }
+        },
+        "Entry outside of directory");
+    checkUnsafeLinks();
+  }
+
+  /** Check that links of archives neither point outside nor are written through. */
+  static void checkUnsafeLinks() {
+    try {
+      var outside = Files.createTempDirectory("outside-");
+      var escapes =
+          List.of(
+              List.of(new TarEntry("a", '2', 0777, outside.toString())),
+              List.of(new TarEntry("jdk/a", '2', 0777, "../../" + outside.getFileName())),
+              List.of(
+                  new TarEntry("a", '2', 0777, outside.toString()),
+                  new TarEntry("a/x", '0', 0644, "evil")),
+              List.of(
+                  new TarEntry("jdk/release", '0', 0644, "JAVA_VERSION=\"26\"\n"),
+                  new TarEntry("jdk/a", '2', 0777, ".."),
+                  new TarEntry("jdk/a/b", '2', 0777, "../..")),
+              List.of( // each target is within the root lexically, but the chain escapes it
+                  new TarEntry("jdk/release", '0', 0644, "JAVA_VERSION=\"26\"\n"),
+                  new TarEntry("jdk/a", '2', 0777, ".."),
+                  new TarEntry("b", '2', 0777, "jdk/a/../" + outside.getFileName())));
+      for (var entries : escapes) {
+        var root = Files.createTempDirectory("home-");
+        try {
+          var input = new GZIPInputStream(new ByteArrayInputStream(createTarGz(entries)));
+          Download.Extractor.untar(input, root);
+          ERRORS.add("Unsafe tar entries expected to be rejected: " + entries);
+        } catch (IOException expected) {
+          System.out.println("Caught expected: " + expected);
+        }
+      }
+      var zip = Files.createTempFile("links-", ".zip");
+      try (var output = new ZipOutputStream(Files.newOutputStream(zip))) {
+        output.putNextEntry(new ZipEntry("jdk/a"));
+        output.write(outside.toString().getBytes());
+        output.putNextEntry(new ZipEntry("jdk/release"));
+        output.write("JAVA_VERSION=\"26\"\n".getBytes());
+      }
+      markSymbolicLink(zip, "jdk/a");
+      try {
+        Download.Extractor.unzip(zip, Files.createTempDirectory("home-"));
+        ERRORS.add("Zip link outside of directory expected to be rejected");
+      } catch (IOException expected) {
+        System.out.println("Caught expected: " + expected);
+      }
+      try (var files = Files.list(outside)) {
+        assertTrue(files.findAny().isEmpty(), "Nothing expected to be written outside");
+      }
+    } catch (Exception exception) {
+      ERRORS.add("Checking unsafe links failed: " + exception);
+    }
+  }
+
+  /** Mark an entry of a zip file as a symbolic link created on Unix, in its central directory. */
+  static void markSymbolicLink(Path zip, String name) throws IOException {
+    var bytes = ByteBuffer.wrap(Files.readAllBytes(zip)).order(ByteOrder.LITTLE_ENDIAN);
+    for (int position = 0; position < bytes.limit() - 46; position++) {
+      if (bytes.getInt(position) != 0x02014b50) continue;
+      var length = bytes.getShort(position + 28);
+      var entry = new String(bytes.array(), position + 46, length);
+      if (!entry.equals(name)) continue;
+      bytes.putShort(position + 4, (short) 0x0314); // made by Unix
+      bytes.putInt(position + 38, 0120777 << 16);
+    }
+    Files.write(zip, bytes.array());
+  }
+
+  static void checkZipExtraction() {
+    System.out.println();
+    System.out.println("// Compare parallel and serial extraction of a zip archive");
+    try {
+      var zip = createZipFixture(128, 256 * 1024);
+      var serial = Long.MAX_VALUE;
+      var parallel = Long.MAX_VALUE;
+      Path serialDirectory = null;
+      Path parallelDirectory = null;
+      for (int round = 0; round < 3; round++) {
+        serialDirectory = Files.createTempDirectory("serial-");
+        var start = System.nanoTime();
+        unzipSerially(zip, serialDirectory);
+        serial = Math.min(serial, System.nanoTime() - start);
+        parallelDirectory = Files.createTempDirectory("parallel-");
+        start = System.nanoTime();
+        Download.Extractor.unzip(zip, parallelDirectory);
+        parallel = Math.min(parallel, System.nanoTime() - start);
+      }
+      var format = "Extracted %d bytes: serial ZipInputStream %d ms, parallel %d ms%n";
+      System.out.printf(format, Files.size(zip), serial / 1_000_000, parallel / 1_000_000);
+      try (var files = Files.walk(serialDirectory)) {
+        for (var file : files.filter(Files::isRegularFile).toList()) {
+          var other = parallelDirectory.resolve(serialDirectory.relativize(file));
+          var same = Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(other));
+          assertTrue(same, "Parallel extraction differs: " + other);
+        }
+      }
+      var stored = parallelDirectory.resolve("jdk-26/lib/stored.bin");
+      assertTrue(Files.size(stored) == 12_345, "Stored entry expected");
+    } catch (Exception exception) {
+      ERRORS.add("Parallel zip extraction failed: " + exception);
+    }
+  }
+
+  /** Create a zip archive of compressible files, a directory, and a stored entry. */
+  static Path createZipFixture(int count, int size) throws IOException {
+    var zip = Files.createTempFile("fixture-", ".zip");
+    var random = new Random(count);
+    var words = List.of("java", "module", "class", "method", "field", "\n", "0x", "42 ");
+    try (var output = new ZipOutputStream(Files.newOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry("jdk-26/lib/"));
+      for (int i = 0; i < count; i++) {
+        output.putNextEntry(new ZipEntry("jdk-26/lib/file-" + i + ".txt"));
+        var text = new StringBuilder(size);
+        while (text.length() < size) text.append(words.get(random.nextInt(words.size())));
+        output.write(text.toString().getBytes());
+      }
+      var bytes = new byte[12_345];
+      random.nextBytes(bytes);
+      var crc = new CRC32();
+      crc.update(bytes);
+      var entry = new ZipEntry("jdk-26/lib/stored.bin");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(bytes.length);
+      entry.setCrc(crc.getValue());
+      output.putNextEntry(entry);
+      output.write(bytes);
+    }
+    return zip;
+  }
+
+  /** Baseline extraction reading the archive as a single stream. */
+  static void unzipSerially(Path zip, Path directory) throws IOException {
+    try (var input = new ZipInputStream(Files.newInputStream(zip))) {
+      for (var entry = input.getNextEntry(); entry != null; entry = input.getNextEntry()) {
+        var target = directory.resolve(entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+          continue;
+        }
+        Files.createDirectories(target.getParent());
+        Files.copy(input, target);
+      }
+    }
+  }
+
+  static void checkExtractedHome(Path home, String longName) throws IOException {
+    assertTrue(home.getFileName().toString().equals("jdk-26"), "Unexpected home: " + home);
+    assertTrue(Files.readString(home.resolve("bin/java")).equals("#!/bin/sh"), "Content differs");
+    assertTrue(Files.size(home.resolve("release")) == 1_800, "Unexpected size of release file");
+    var license = home.resolveSibling(longName);
+    assertTrue(Files.exists(license), "File with long name expected: " + license);
+    assertTrue(Files.isSymbolicLink(home.resolve("lib/java")), "Symbolic link expected");
+    assertTrue(Files.isRegularFile(home.resolve("lib/java")), "Symbolic link target expected");
+    if (!Files.getFileStore(home).supportsFileAttributeView("posix")) return;
+    assertTrue(Files.isExecutable(home.resolve("bin/java")), "Executable file expected");
+  }
+
+  record TarEntry(String name, char type, int mode, String content) {}
+
+  /** Create a gzip-compressed tar archive, using PAX headers for names longer than 100 bytes. */
+  static byte[] createTarGz(List<TarEntry> entries) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var output = new GZIPOutputStream(bytes)) {
+      for (var entry : entries) {
+        var link = entry.type() == '2' ? entry.content() : "";
+        var content = entry.type() == '0' ? entry.content().getBytes() : new byte[0];
+        if (entry.name().length() > 100) {
+          var record = " path=" + entry.name() + "\n";
+          var length = record.length() + String.valueOf(record.length()).length();
+          if (String.valueOf(length).length() > String.valueOf(record.length()).length()) length++;
+          writeTarEntry(output, "PaxHeader", 'x', 0644, (length + record).getBytes(), "");
+        }
+        writeTarEntry(output, entry.name(), entry.type(), entry.mode(), content, link);
+      }
+      output.write(new byte[1024]);
+    }
+    return bytes.toByteArray();
+  }
+
+  static void writeTarEntry(
+      OutputStream output, String name, char type, int mode, byte[] content, String link)
+      throws IOException {
+    var header = new byte[512];
+    putTarField(header, 0, name.length() > 100 ? name.substring(0, 100) : name);
+    putTarField(header, 100, "%07o".formatted(mode));
+    putTarField(header, 108, "0000000");
+    putTarField(header, 116, "0000000");
+    putTarField(header, 124, "%011o".formatted(content.length));
+    putTarField(header, 136, "%011o".formatted(1_700_000_000));
+    putTarField(header, 148, "        ");
+    header[156] = (byte) type;
+    putTarField(header, 157, link);
+    putTarField(header, 257, "ustar");
+    putTarField(header, 263, "00");
+    var checksum = 0;
+    for (var b : header) checksum += b & 0xFF;
+    putTarField(header, 148, "%06o\0 ".formatted(checksum));
+    output.write(header);
+    output.write(content);
+    output.write(new byte[(512 - content.length % 512) % 512]);
+  }
+
+  static void putTarField(byte[] header, int offset, String value) {
+    var bytes = value.getBytes();
+    System.arraycopy(bytes, 0, header, offset, bytes.length);
+  }
+
+  static void checkUriMapping() {
+    System.out.println();
+    System.out.println("// Check loading of the URI mapping");
+    try (var stub = new Stub(false)) {
+      var directory = Files.createTempDirectory("mapping-");
+      var local = directory.resolve("local.properties");
+      var bundled = Files.writeString(directory.resolve("bundled.properties"), "key=bundled");
+      stub.files.put("/mapping.properties", "key=remote".getBytes());
+      var uri = stub.uri("/mapping.properties");
+      var browser = new Download.Browser();
+      var hour = Duration.ofHours(1);
+      var mapping = Download.JavaNetWebsite.loadUriMapping(browser, uri, local, bundled, hour);
+      assertTrue(mapping.orElseThrow().getProperty("key").equals("remote"), "Remote expected");
+      assertTrue(browser.requests.get() == 1, "Expected a single request");
+      mapping = Download.JavaNetWebsite.loadUriMapping(browser, uri, local, bundled, hour);
+      assertTrue(mapping.orElseThrow().getProperty("key").equals("remote"), "Local expected");
+      assertTrue(browser.requests.get() == 1, "Expected no request within time-to-live");
+      var expired = Duration.ZERO;
+      mapping = Download.JavaNetWebsite.loadUriMapping(browser, uri, local, bundled, expired);
+      assertTrue(mapping.orElseThrow().getProperty("key").equals("remote"), "Local expected");
+      assertTrue(browser.requests.get() == 2, "Expected a conditional request");
+      assertTrue(stub.requests.get() == 2, "Stub counted other requests");
+      stub.files.clear(); // respond with 404
+      mapping = Download.JavaNetWebsite.loadUriMapping(browser, uri, local, bundled, expired);
+      assertTrue(mapping.orElseThrow().getProperty("key").equals("remote"), "Stale expected");
+      Files.delete(local);
+      mapping = Download.JavaNetWebsite.loadUriMapping(browser, uri, local, bundled, expired);
+      assertTrue(mapping.orElseThrow().getProperty("key").equals("bundled"), "Bundled expected");
+    } catch (Exception exception) {
+      ERRORS.add("Loading URI mapping failed: " + exception);
+    }
+  }
+
+  static void checkUriListing() {
+    System.out.println();
+    System.out.println("// Check incremental listing of jdk.java.net URIs");
+    var ga = "https://download.java.net/java/GA/jdk26.0.2/openjdk-26.0.2_linux-x64_bin.tar.gz";
+    var loom = "https://download.java.net/java/early_access/loom/openjdk-loom_linux-x64_bin.zip";
+    try {
+      var file = Files.createTempFile("jdk.java.net-uri-", ".properties");
+      Files.writeString(
+          file,
+          """
+          orphan,latest,linux,x64=https://download.java.net/orphan.tar.gz
+          #
+          # https://jdk.java.net/26/
+          #
+          26,26.0.2,linux,x64=%s
+          ga,latest,linux,x64=%s
+          #
+          # https://jdk.java.net/loom/
+          #
+          # a comment=ignored
+          loom,ea,linux,x64=%s
+          """
+              .formatted(ga, ga, loom));
+      var sections = ListOpenJavaDevelopmentKits.readSections(file);
+      var addresses = List.copyOf(sections.keySet());
+      var expected = List.of("https://jdk.java.net/26/", "https://jdk.java.net/loom/");
+      assertTrue(addresses.equals(expected), "Unexpected sections: " + addresses);
+      var first = sections.get(expected.get(0));
+      var second = sections.get(expected.get(1));
+      var keys = Map.of("26,26.0.2,linux,x64", ga, "ga,latest,linux,x64", ga);
+      assertTrue(first.equals(keys), "Unexpected first section: " + first);
+      assertTrue(second.equals(Map.of("loom,ea,linux,x64", loom)), "Unexpected: " + second);
+
+      // Printed sections are read back unchanged
+      var printed = Files.createTempFile("jdk.java.net-uri-", ".properties");
+      try (var out = new PrintStream(Files.newOutputStream(printed), false, "UTF-8")) {
+        ListOpenJavaDevelopmentKits.print(
+            out,
+            List.of(
+                new ListOpenJavaDevelopmentKits.Section(
+                    ListOpenJavaDevelopmentKits.Page.of("26"), first),
+                new ListOpenJavaDevelopmentKits.Section(
+                    ListOpenJavaDevelopmentKits.Page.of("loom"), second)));
+      }
+      var reread = ListOpenJavaDevelopmentKits.readSections(printed);
+      assertTrue(reread.equals(sections), "Printed sections differ: " + reread);
+    } catch (Exception exception) {
+      ERRORS.add("Reading sections failed: " + exception);
+    }
+    var before = Map.of("a", "1", "b", "2", "c", "3");
+    var after = Map.of("a", "1", "b", "20", "d\"", "4");
+    var diff = ListOpenJavaDevelopmentKits.diff(new TreeMap<>(before), new TreeMap<>(after));
+    var json =
+        "{\"added\":{\"d\\\"\":\"4\"},\"removed\":{\"c\":\"3\"},"
+            + "\"changed\":{\"b\":{\"old\":\"2\",\"new\":\"20\"}}}";
+    assertTrue(diff.equals(json), "Unexpected diff: " + diff);
+    var none = ListOpenJavaDevelopmentKits.diff(before, before);
+    assertTrue(none.equals("{\"added\":{},\"removed\":{},\"changed\":{}}"), "Diff: " + none);
+  }
+
+  static void checkStorePruning() {
+    System.out.println();
+    System.out.println("// Check pruning of stored archives");
+    try {
+      var store = new Download.Store(Files.createTempDirectory("store-"));
+      var now = System.currentTimeMillis();
+      var oldest = createStoredArchive(store, "https://host/1.tar.gz", now - 3_600_000 * 3);
+      var older = createStoredArchive(store, "https://host/2.tar.gz", now - 3_600_000 * 2);
+      var recent = createStoredArchive(store, "https://host/3.tar.gz", now - 60_000);
+      var checksum = Download.Metadata.load(recent).properties.getProperty("sha256");
+      var used = Files.createDirectories(store.computeHomeDirectory(checksum).resolve("jdk"));
+      var orphan = Files.createDirectories(store.computeHomeDirectory("0".repeat(64)));
+      Files.setLastModifiedTime(orphan, FileTime.fromMillis(now - 3_600_000 * 2));
+      // Stored by a concurrent run, its verified checksum not yet recorded when entries are listed
+      var inserted = createStoredArchive(store, "https://host/4.tar.gz", now);
+      Files.delete(Download.Metadata.load(inserted).file);
+      var lock = store.lock(oldest);
+      try {
+        var freed = store.prune(1500, Duration.ofDays(1));
+        assertTrue(freed == 1000, "Expected 1000 bytes to be freed, but got: " + freed);
+      } finally {
+        lock.close();
+      }
+      assertTrue(Files.exists(oldest), "Locked archive must not be evicted");
+      assertTrue(Files.notExists(older), "Least-recently used archive expected to be evicted");
+      assertTrue(Files.exists(recent), "Recently accessed archive must not be evicted");
+      assertTrue(Files.exists(older.resolveSibling(".lock")), "Lock file must not be deleted");
+      try (var blobs = Files.list(store.root().resolve("sha256"))) {
+        assertTrue(blobs.count() == 3, "Expected unreferenced stored archive to be deleted");
+      }
+      assertTrue(Files.notExists(orphan), "Expected home of unreferenced archive to be deleted");
+      assertTrue(Files.exists(used), "Home of stored archive must not be deleted");
+      store.prune(Long.MAX_VALUE, Duration.ofHours(2));
+      assertTrue(Files.notExists(oldest), "Expired archive expected to be evicted");
+      assertTrue(Files.exists(recent), "Recently accessed archive must not be evicted");
+      assertTrue(Download.Store.parseSize("2K") == 2048, "Expected 2K to be 2048 bytes");
+    } catch (Exception exception) {
+      ERRORS.add("Pruning failed: " + exception);
+    }
+    var home = System.getProperty("user.home");
+    try {
+      // An entry deleted by a concurrent run while listing is skipped
+      var store = new Download.Store(Files.createTempDirectory("store-"));
+      var entry = Files.createDirectories(store.root().resolve("0123456789abcdef"));
+      Files.createSymbolicLink(entry.resolve("jdk.tar.gz"), entry.resolve("deleted.tar.gz"));
+      var entries = store.listEntries();
+      assertTrue(entries.isEmpty(), "Expected deleted entry to be skipped: " + entries);
+
+      // A failure to prune the store after acquiring archives is only a warning
+      System.setProperty("user.home", Files.createTempDirectory("home-").toString());
+      System.setProperty("cache-max-size", "1K");
+      var root = Download.Store.of().root();
+      Files.createDirectories(root.getParent());
+      Files.writeString(root, "not a directory");
+      Download.prune();
+    } catch (Exception exception) {
+      ERRORS.add("Pruning failures failed: " + exception);
+    } finally {
+      System.setProperty("user.home", home);
+      System.clearProperty("cache-max-size");
+    }
+  }
+
+  static void checkFlightRecording() {
+    System.out.println();
+    System.out.println("// Check flight recorder events");
+    try (var stub = new Stub(true)) {
+      stub.add("/jdk.tar.gz", 345_678);
+      var file = Files.createTempFile("download-", ".jfr");
+      System.setProperty("jfr-file", file.toString());
+      try (var recording = Download.FlightRecording.start()) {
+        assertTrue(recording != null, "Flight recording expected to be started");
+        var archive = computeArchivePath(stub.uri("/jdk.tar.gz"));
+        var downloader = new Download.Downloader(archive, stub.uri("/jdk.tar.gz"), BROWSER);
+        downloader.acquireArchive(stub.uri("/jdk.tar.gz.sha256"), false, false);
+        downloader.computeChecksum(archive);
+      } finally {
+        System.clearProperty("jfr-file");
+      }
+      var events = RecordingFile.readAllEvents(file);
+      var requests = events.stream().filter(e -> e.getEventType().getName().endsWith("Request"));
+      assertTrue(
+          requests.anyMatch(e -> e.getInt("status") == 200 && e.getLong("bytes") == 345_678),
+          "Expected an event of the archive request: " + events);
+      var hashes = events.stream().filter(e -> e.getEventType().getName().endsWith("Hash"));
+      assertTrue(hashes.count() == 1, "Expected an event of the computed checksum: " + events);
+      Files.delete(file);
+    } catch (Exception exception) {
+      ERRORS.add("Flight recording failed: " + exception);
+    }
+  }
+
+  static void checkStallDetection() {
+    System.out.println();
+    System.out.println("// Check detection of stalled transfers");
+    var server = (HttpServer) null;
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+      server.createContext(
+          "/",
+          exchange -> {
+            try (exchange) {
+              exchange.sendResponseHeaders(200, 1_000_000);
+              exchange.getResponseBody().write(new byte[100]);
+              exchange.getResponseBody().flush();
+              Thread.sleep(10_000); // a trickle of bytes below the rate floor
+            } catch (InterruptedException | IOException exception) {
+              // connection closed by the client
+            }
+          });
+      server.start();
+      System.setProperty("stall-rate", "1000");
+      System.setProperty("stall-window", "1");
+      var uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/jdk.tar.gz";
+      var file = Files.createTempFile("download-", ".tar.gz");
+      var start = System.nanoTime();
+      try {
+        BROWSER.download(uri, file);
+        ERRORS.add("Stalled download should fail");
+      } catch (IOException expected) {
+        System.out.println("Caught expected: " + expected);
+        var message = String.valueOf(expected.getMessage());
+        assertTrue(message.contains("stalled at 100 bytes"), "Unexpected message: " + message);
+      }
+      var elapsed = Duration.ofNanos(System.nanoTime() - start);
+      assertTrue(elapsed.toSeconds() < 5, "Expected stall to be detected early: " + elapsed);
+      Files.delete(file);
+    } catch (Exception exception) {
+      ERRORS.add("Stall detection failed: " + exception);
+    } finally {
+      System.clearProperty("stall-rate");
+      System.clearProperty("stall-window");
+      if (server != null) server.stop(0);
+    }
+  }
+
+  static void checkRetryPolicy() {
+    System.out.println();
+    System.out.println("// Check retry policy");
+    var policy = new Download.RetryPolicy(3, Duration.ofMinutes(1));
+    var reset = new IOException("Connection reset");
+    assertTrue(policy.computeDelay(1, reset, Duration.ZERO).isPresent(), "I/O error is transient");
+    assertTrue(policy.computeDelay(3, reset, Duration.ZERO).isEmpty(), "No attempts expected");
+    assertTrue(policy.computeDelay(1, reset, Duration.ofMinutes(1)).isEmpty(), "Budget exceeded");
+    var disk = new NoSuchFileException("archive.part");
+    assertTrue(policy.computeDelay(1, disk, Duration.ZERO).isEmpty(), "File system error is fatal");
+    for (int attempt = 1; attempt < 40; attempt++) {
+      var delay = Download.RetryPolicy.computeBackoff(attempt);
+      assertTrue(delay.toMillis() >= 1000, "Backoff too short: " + delay);
+      var max = Download.RetryPolicy.MAX_DELAY;
+      assertTrue(delay.compareTo(max) <= 0, "Backoff too long: " + delay);
+    }
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 123_456);
+      stub.failures.put("/jdk.tar.gz", 2);
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      Download.Metrics.RUN.clear();
+      new Download.Downloader(archive, uri, BROWSER).acquireArchive(uri + ".sha256", false, false);
+      var content = Files.readAllBytes(archive);
+      assertTrue(Arrays.equals(bytes, content), "Error body written to archive");
+      var retries = Download.Metrics.RUN.counters.get("retries");
+      assertTrue(retries == 2, "Expected 2 retries, but got: " + retries);
+      var missing = stub.uri("/missing.tar.gz");
+      var path = computeArchivePath(missing);
+      Download.Metrics.RUN.clear();
+      try {
+        new Download.Downloader(path, missing, BROWSER).acquireArchive(missing, false, false);
+        ERRORS.add("Download of missing archive should fail");
+      } catch (Download.HttpStatusException expected) {
+        assertTrue(expected.status == 404, "Expected status 404: " + expected);
+      }
+      assertTrue(Files.notExists(path), "No archive expected for an error response");
+      var none = Download.Metrics.RUN.counters.get("retries");
+      assertTrue(none == null, "Expected no retries for a fatal status: " + none);
+    } catch (Exception exception) {
+      ERRORS.add("Retry policy failed: " + exception);
+    }
+    System.setProperty("retry-budget", "2");
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 123_456);
+      stub.pause = Duration.ofMillis(2_500); // the transfer fails after the budget passed
+      stub.truncations.put("/jdk.tar.gz", 1);
+      var uri = stub.uri("/jdk.tar.gz");
+      var archive = computeArchivePath(uri);
+      var browser = new Download.Browser();
+      new Download.Downloader(archive, uri, browser).downloadArchive(false);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Resumed content differs");
+      var received = browser.received.get();
+      assertTrue(received == bytes.length, "Expected a resumed download, but got: " + received);
+    } catch (Exception exception) {
+      ERRORS.add("Retry budget failed: " + exception);
+    } finally {
+      System.clearProperty("retry-budget");
+    }
+  }
+
+  static void checkMetrics() {
+    System.out.println();
+    System.out.println("// Check metrics of a run");
+    var metrics = new Download.Metrics();
+    metrics.add("resolve", Duration.ofSeconds(7)); // not transferring bytes
+    metrics.add("revalidate", Duration.ofMillis(500));
+    metrics.add("download", Duration.ofMillis(1500));
+    metrics.count("bytes", 20_000_000);
+    var throughput = metrics.computeThroughput();
+    assertTrue(throughput.equals("10.00"), "Unexpected throughput: " + throughput);
+    var json = metrics.toJson();
+    assertTrue(json.startsWith("{\"startup-ms\":0,\"resolve-ms\":7000,"), "Unexpected: " + json);
+    assertTrue(json.contains(",\"download-ms\":1500,"), "Unexpected download: " + json);
+    assertTrue(json.contains(",\"bytes\":20000000,"), "Unexpected bytes: " + json);
+    assertTrue(json.endsWith(",\"mb-per-second\":10.00}"), "Unexpected throughput: " + json);
+    var empty = new Download.Metrics().toJson();
+    assertTrue(empty.endsWith(",\"mb-per-second\":0.00}"), "Unexpected empty: " + empty);
+    try (var stub = new Stub(true)) {
+      var bytes = stub.add("/jdk.tar.gz", 123_456);
+      var uri = stub.uri("/jdk.tar.gz");
+      var file = Files.createTempFile("download-", ".tar.gz");
+      Files.write(file, Arrays.copyOf(bytes, 100_000)); // left behind by an interrupted attempt
+      var etag = "\"" + Integer.toHexString(Arrays.hashCode(bytes)) + '"';
+      var browser = new Download.Browser();
+      browser.download(uri, file, etag);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(file)), "Resumed content differs");
+      var received = browser.received.get();
+      assertTrue(received == 23_456, "Expected only resumed bytes counted, but got: " + received);
+      Files.delete(file);
+    } catch (Exception exception) {
+      ERRORS.add("Metrics failed: " + exception);
+    }
+  }
+
+  static void checkMirrors() {
+    System.out.println();
+    System.out.println("// Check downloads from mirrors");
+    var oracle = "https://download.oracle.com/java/26/latest/jdk-26_linux-x64_bin.tar.gz";
+    var alternates = Download.Website.computeMirrorUris(oracle, " https://a.test/jdk/, http://b");
+    var expected =
+        List.of(
+            "https://a.test/jdk/download.oracle.com/java/26/latest/jdk-26_linux-x64_bin.tar.gz",
+            "http://b/download.oracle.com/java/26/latest/jdk-26_linux-x64_bin.tar.gz");
+    assertTrue(alternates.equals(expected), "Unexpected mirror URIs: " + alternates);
+    assertThrows(() -> Download.Website.computeMirrorUris(oracle, "file:///tmp"), "HTTP(S) URI");
+    System.setProperty("mirror-hedge-delay", "200");
+    try (var origin = new Stub(true);
+        var slow = new Stub(true);
+        var fast = new Stub(true);
+        var tampered = new Stub(true)) {
+      var bytes = origin.add("/jdk.tar.gz", 123_456);
+      var uri = origin.uri("/jdk.tar.gz");
+      var path = "/127.0.0.1/jdk.tar.gz";
+      slow.add(path, bytes);
+      slow.latency = Duration.ofSeconds(3);
+      fast.add(path, bytes);
+      tampered.add(path, 123_456 + 1);
+
+      // The fast mirror answers after the hedge delay, long before the slow one
+      var archive = computeArchivePath(uri);
+      var mirrors = List.of(slow.uri(path), fast.uri(path));
+      var downloader = new Download.Downloader(archive, uri, BROWSER, mirrors);
+      var start = System.nanoTime();
+      System.setProperty("extract", "true");
+      try {
+        downloader.acquireArchive(uri + ".sha256", false, false);
+      } finally {
+        System.clearProperty("extract");
+      }
+      var elapsed = Duration.ofNanos(System.nanoTime() - start);
+      assertTrue(fast.uri(path).equals(downloader.source), "Fast mirror not selected");
+      assertTrue(downloader.extraction == null, "Bytes of a mirror expected not to be streamed");
+      assertTrue(elapsed.toSeconds() < 3, "Expected hedging to skip the slow mirror: " + elapsed);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(archive)), "Mirrored bytes differ");
+      var requests = origin.requests.get();
+      assertTrue(requests == 1, "Expected only the checksum from origin, but got: " + requests);
+
+      // A missing file at a mirror falls back to the origin without waiting
+      var fallback = computeArchivePath(uri);
+      var missing = List.of(fast.uri("/missing.tar.gz"));
+      downloader = new Download.Downloader(fallback, uri, BROWSER, missing);
+      downloader.acquireArchive(uri + ".sha256", false, false);
+      assertTrue(uri.equals(downloader.source), "Origin not selected: " + downloader.source);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(fallback)), "Origin bytes differ");
+
+      // Bytes of a mirror are verified against the checksum of the origin, not of the mirror,
+      // and downloaded once more from the origin if they differ
+      var rejected = computeArchivePath(uri);
+      downloader = new Download.Downloader(rejected, uri, BROWSER, List.of(tampered.uri(path)));
+      var transfers = origin.transfers.get();
+      downloader.acquireArchive(uri + ".sha256", false, false);
+      assertTrue(uri.equals(downloader.source), "Origin not selected: " + downloader.source);
+      assertTrue(Arrays.equals(bytes, Files.readAllBytes(rejected)), "Tampered bytes kept");
+      assertTrue(origin.transfers.get() - transfers == 1, "Expected one download from origin");
+      var checksum = Download.Metadata.load(rejected).findVerifiedChecksum(uri);
+      assertTrue(checksum != null, "Archive downloaded from origin not verified");
+
+      // An archive failing verification from the origin is deleted
+      tampered.add("/jdk.tar.gz", 123_456 + 1);
+      var corrupt = computeArchivePath(tampered.uri("/jdk.tar.gz"));
+      downloader = new Download.Downloader(corrupt, tampered.uri("/jdk.tar.gz"));
+      try {
+        downloader.acquireArchive(uri + ".sha256", false, false);
+        ERRORS.add("Tampered archive of the origin should be rejected");
+      } catch (AssertionError expectedError) {
+        var message = String.valueOf(expectedError.getMessage());
+        assertTrue(!message.contains("from mirror"), "Unexpected message: " + message);
+      }
+      assertTrue(Files.notExists(corrupt), "Tampered archive should be deleted");
+    } catch (Exception exception) {
+      ERRORS.add("Download from mirrors failed: " + exception);
+    } finally {
+      System.clearProperty("mirror-hedge-delay");
+    }
+  }
+
+  static void checkProxy() {
+    System.out.println();
+    System.out.println("// Check caching proxy");
+    try (var upstream = new Stub(true)) {
+      var bytes = upstream.add("/jdk.tar.gz", 234_567);
+      upstream.latency = Duration.ofMillis(300); // widen the window of concurrent misses
+      var store = new Download.Store(Files.createTempDirectory("store-"));
+      var origins = Map.of("127.0.0.1", upstream.uri(""));
+      var address = new InetSocketAddress("127.0.0.1", 0);
+      try (var proxy = new Download.Proxy(store, BROWSER, origins, address)) {
+        var uri = proxy.uri("/127.0.0.1/jdk.tar.gz");
+
+        // Concurrent misses share a single download of the archive and its checksum
+        var futures = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+        for (int i = 0; i < 8; i++) futures.add(sendAsync(uri, null));
+        for (var future : futures) {
+          var response = future.join();
+          assertTrue(response.statusCode() == 200, "Expected status 200: " + response);
+          assertTrue(Arrays.equals(bytes, response.body()), "Proxied bytes differ");
+        }
+        var requests = upstream.requests.get();
+        assertTrue(requests == 2, "Expected 2 upstream requests, but got: " + requests);
+
+        // Byte ranges, including a suffix range and an unsatisfiable one
+        var range = sendAsync(uri, "bytes=100-199").join();
+        assertTrue(range.statusCode() == 206, "Expected partial content: " + range);
+        var expected = Arrays.copyOfRange(bytes, 100, 200);
+        assertTrue(Arrays.equals(expected, range.body()), "Range bytes differ");
+        var suffix = sendAsync(uri, "bytes=-10").join();
+        var tail = Arrays.copyOfRange(bytes, bytes.length - 10, bytes.length);
+        assertTrue(Arrays.equals(tail, suffix.body()), "Suffix bytes differ");
+        var unsatisfiable = sendAsync(uri, "bytes=999999-").join();
+        assertTrue(unsatisfiable.statusCode() == 416, "Expected 416: " + unsatisfiable);
+
+        // Checksum files are passed through, unknown hosts are not proxied
+        var checksum = sendAsync(uri + ".sha256", null).join();
+        var original = upstream.files.get("/jdk.tar.gz.sha256");
+        assertTrue(Arrays.equals(original, checksum.body()), "Checksum not passed through");
+        var unknown = sendAsync(proxy.uri("/example.com/jdk.tar.gz"), null).join();
+        assertTrue(unknown.statusCode() == 404, "Expected 404 for unknown host: " + unknown);
+
+        // Runners use the proxy as a mirror
+        var mirrored = computeArchivePath(upstream.uri("/jdk.tar.gz"));
+        var downloader =
+            new Download.Downloader(mirrored, upstream.uri("/jdk.tar.gz"), BROWSER, List.of(uri));
+        downloader.acquireArchive(upstream.uri("/jdk.tar.gz.sha256"), false, false);
+        assertTrue(uri.equals(downloader.source), "Proxy not selected: " + downloader.source);
+        assertTrue(Arrays.equals(bytes, Files.readAllBytes(mirrored)), "Mirrored bytes differ");
+      }
+
+      // Entries persist across restarts of the proxy
+      var before = upstream.requests.get();
+      try (var proxy = new Download.Proxy(store, BROWSER, origins, address)) {
+        var response = sendAsync(proxy.uri("/127.0.0.1/jdk.tar.gz"), null).join();
+        assertTrue(Arrays.equals(bytes, response.body()), "Persisted bytes differ");
+      }
+      var after = upstream.requests.get();
+      assertTrue(before == after, "Expected no upstream request after restart: " + after);
+    } catch (Exception exception) {
+      ERRORS.add("Caching proxy failed: " + exception);
+    }
+
+    // Runners probing a cold proxy use it as their mirror instead of downloading from the origin
+    System.setProperty("mirror-hedge-delay", "500");
+    try (var upstream = new Stub(true)) {
+      var bytes = upstream.add("/jdk.tar.gz", 234_567);
+      upstream.pause = Duration.ofMillis(1_500); // longer than the hedge delay
+      var store = new Download.Store(Files.createTempDirectory("store-"));
+      var origins = Map.of("127.0.0.1", upstream.uri(""));
+      var address = new InetSocketAddress("127.0.0.1", 0);
+      try (var proxy = new Download.Proxy(store, BROWSER, origins, address)) {
+        var uri = proxy.uri("/127.0.0.1/jdk.tar.gz");
+        var origin = upstream.uri("/jdk.tar.gz");
+        var futures = new ArrayList<CompletableFuture<Download.Downloader>>();
+        for (int i = 0; i < 3; i++) {
+          var archive = computeArchivePath(origin);
+          var downloader = new Download.Downloader(archive, origin, BROWSER, List.of(uri));
+          futures.add(
+              CompletableFuture.supplyAsync(
+                  () -> {
+                    try {
+                      downloader.acquireArchive(origin + ".sha256", false, false);
+                      return downloader;
+                    } catch (Exception exception) {
+                      throw new CompletionException(exception);
+                    }
+                  }));
+        }
+        for (var future : futures) {
+          var downloader = future.join();
+          assertTrue(uri.equals(downloader.source), "Proxy not selected: " + downloader.source);
+          var received = Files.readAllBytes(downloader.archive);
+          assertTrue(Arrays.equals(bytes, received), "Streamed bytes differ");
+        }
+        var transfers = upstream.transfers.get();
+        assertTrue(transfers == 1, "Expected a single download from origin, but got: " + transfers);
+      }
+    } catch (Exception exception) {
+      ERRORS.add("Cold caching proxy failed: " + exception);
+    } finally {
+      System.clearProperty("mirror-hedge-delay");
+    }
+  }
+
+  static void checkBatch() {
+    System.out.println();
+    System.out.println("// Check batch acquisitions");
+    var prefix = Download.OracleComWebsite.URI_PREFIX;
+    var home = System.getProperty("user.home");
+    try (var stub = new Stub(true)) {
+      var releases = List.of("26.0.1", "25.0.2", "26.0.1", "21.0.9", "17.0.17");
+      var descriptors = new ArrayList<String>();
+      var expected = new ArrayList<String>();
+      for (var release : releases) {
+        var feature = release.substring(0, release.indexOf('.'));
+        var path = "/java/%s/archive/jdk-%s_linux-x64_bin.tar.gz".formatted(feature, release);
+        stub.add(path, 12_345 + release.hashCode() % 1_000);
+        descriptors.add(String.join(",", "oracle.com", feature, release, "linux", "x64", "tar.gz"));
+        expected.add(stub.uri(path));
+      }
+      stub.latency = Duration.ofMillis(200); // overlap the transfers of concurrent downloads
+      Download.OracleComWebsite.URI_PREFIX = stub.uri("/java/");
+      System.setProperty("user.home", Files.createTempDirectory("home-").toString());
+      System.setProperty("concurrency", "2");
+      var outputs = Download.acquireAll(descriptors, BROWSER, false);
+      var paths = new ArrayList<String>();
+      for (var uri : expected) paths.add(Download.Store.of().computeArchivePath(uri).toString());
+      var archives = Download.GitHub.toJsonArray(paths);
+      assertTrue(archives.equals(outputs.get("archives")), "Unexpected archives: " + outputs);
+      var versions = Download.GitHub.toJsonArray(releases);
+      assertTrue(versions.equals(outputs.get("versions")), "Unexpected versions: " + outputs);
+      assertTrue(paths.get(2).equals(outputs.get("archive-2")), "Unexpected archive-2: " + outputs);
+      for (var path : paths) assertTrue(Files.exists(Path.of(path)), "Missing archive: " + path);
+      var transfers = stub.transfers.get();
+      assertTrue(transfers == 4, "Expected one transfer per distinct URI, but got: " + transfers);
+      var peak = stub.peak.get();
+      assertTrue(peak == 2, "Expected at most 2 concurrent transfers, but got: " + peak);
+    } catch (Exception exception) {
+      ERRORS.add("Batch acquisition failed: " + exception);
+    } finally {
+      Download.OracleComWebsite.URI_PREFIX = prefix;
+      System.setProperty("user.home", home);
+      System.clearProperty("concurrency");
+    }
+  }
+
+  static CompletableFuture<HttpResponse<byte[]>> sendAsync(String uri, String range) {
+    var builder = HttpRequest.newBuilder(URI.create(uri));
+    if (range != null) builder.header("Range", range);
+    return BROWSER.client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  static Path createStoredArchive(Download.Store store, String uri, long accessed)
+      throws IOException {
+    var archive = store.computeArchivePath(uri);
+    Files.createDirectories(archive.getParent());
+    Files.write(archive, uri.repeat(1000).substring(0, 1000).getBytes());
+    var checksum = new Download.Downloader(archive, uri).computeChecksum(archive);
+    var metadata = Download.Metadata.load(archive);
+    metadata.recordVerifiedChecksum(uri, checksum);
+    metadata.properties.setProperty("accessed", String.valueOf(accessed));
+    metadata.store();
+    store.insert(archive, checksum);
+    return archive;
+  }
+
+  static Path computeArchivePath(String uri) throws IOException {
+    return new Download.Store(Files.createTempDirectory("store-")).computeArchivePath(uri);
+  }
+
+  static void assertTrue(boolean condition, String message) {
+    if (condition) return;
+    ERRORS.add(message);
   }
 
   static void assertThrows(Runnable runnable, String snippet) {
@@ -129,4 +1412,139 @@ public class Test {
     }
     throw new AssertionError("Caught nothing?");
   }
+
+  /** Local HTTP server serving generated files, optionally supporting single byte ranges. */
+  static class Stub implements AutoCloseable {
+    static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    final boolean ranges;
+    final HttpServer server;
+    final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    final Map<String, Integer> failures = new ConcurrentHashMap<>(); // path -> 503 responses
+    final Map<String, Integer> truncations = new ConcurrentHashMap<>(); // path -> bodies cut off
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger transfers = new AtomicInteger(); // GET requests of files, not checksums
+    final AtomicInteger active = new AtomicInteger(); // transfers in progress
+    final AtomicInteger peak = new AtomicInteger(); // most transfers in progress at once
+    volatile Duration latency = Duration.ZERO; // before each response
+    volatile Duration pause = Duration.ZERO; // halfway through the body of each transfer
+
+    Stub(boolean ranges) throws IOException {
+      this.ranges = ranges;
+      this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/", this::handle);
+      server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+      server.start();
+    }
+
+    /** Add a file of random bytes and its checksum file. */
+    byte[] add(String path, int size) {
+      var bytes = new byte[size];
+      new Random(size).nextBytes(bytes);
+      return add(path, bytes);
+    }
+
+    /** Add a file and its checksum file. */
+    byte[] add(String path, byte[] bytes) {
+      var hasher = new Download.Hasher();
+      hasher.update(ByteBuffer.wrap(bytes));
+      files.put(path, bytes);
+      files.put(path + ".sha256", hasher.checksum().getBytes());
+      return bytes;
+    }
+
+    /** Map a remote URI to a path on this server, serving a small file and its checksum file. */
+    String mirror(String remote) {
+      var uri = URI.create(remote);
+      var path = "/" + uri.getHost() + uri.getPath();
+      if (!files.containsKey(path)) add(path, 1_024 + Math.abs(path.hashCode() % 1_024));
+      return uri(path);
+    }
+
+    String uri(String path) {
+      return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      var get = exchange.getRequestMethod().equals("GET");
+      var transfer = get && !exchange.getRequestURI().getPath().endsWith(".sha256");
+      if (transfer) {
+        transfers.incrementAndGet();
+        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+      }
+      try (exchange) {
+        try {
+          Thread.sleep(latency);
+        } catch (InterruptedException exception) {
+          return;
+        }
+        var failing = failures.remove(exchange.getRequestURI().getPath());
+        if (failing != null) {
+          if (failing > 1) failures.put(exchange.getRequestURI().getPath(), failing - 1);
+          var body = "Service Unavailable".getBytes();
+          exchange.getResponseHeaders().set("Retry-After", "0");
+          exchange.sendResponseHeaders(503, body.length);
+          exchange.getResponseBody().write(body);
+          return;
+        }
+        var bytes = files.get(exchange.getRequestURI().getPath());
+        if (bytes == null) {
+          exchange.sendResponseHeaders(404, -1);
+          return;
+        }
+        var headers = exchange.getResponseHeaders();
+        var etag = "\"" + Integer.toHexString(Arrays.hashCode(bytes)) + '"';
+        headers.set("ETag", etag);
+        if (ranges) headers.set("Accept-Ranges", "bytes");
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+          return;
+        }
+        var head = exchange.getRequestMethod().equals("HEAD");
+        var range = exchange.getRequestHeaders().getFirst("Range");
+        var condition = exchange.getRequestHeaders().getFirst("If-Range");
+        if (condition != null && !condition.equals(etag)) range = null;
+        var matcher = range == null || !ranges ? null : RANGE.matcher(range);
+        if (matcher == null || !matcher.matches()) {
+          headers.set("Content-Length", String.valueOf(bytes.length));
+          exchange.sendResponseHeaders(200, head ? -1 : bytes.length);
+          if (!head) write(exchange, bytes, 0, bytes.length);
+          return;
+        }
+        var start = Integer.parseInt(matcher.group(1));
+        var last = matcher.group(2);
+        var end = last.isEmpty() ? bytes.length - 1 : Integer.parseInt(last);
+        end = Math.min(end, bytes.length - 1);
+        headers.set("Content-Range", "bytes %d-%d/%d".formatted(start, end, bytes.length));
+        exchange.sendResponseHeaders(206, head ? -1 : end - start + 1);
+        if (!head) write(exchange, bytes, start, end - start + 1);
+      } finally {
+        if (transfer) active.decrementAndGet();
+      }
+    }
+
+    /** Write a response body, pausing halfway or cutting it off there if configured. */
+    void write(HttpExchange exchange, byte[] bytes, int offset, int length) throws IOException {
+      var path = exchange.getRequestURI().getPath();
+      var truncated = truncations.remove(path);
+      if (truncated != null && truncated > 1) truncations.put(path, truncated - 1);
+      var body = exchange.getResponseBody();
+      var half = pause.isZero() && truncated == null ? length : length / 2;
+      body.write(bytes, offset, half);
+      body.flush();
+      try {
+        Thread.sleep(pause);
+      } catch (InterruptedException exception) {
+        throw new InterruptedIOException();
+      }
+      if (truncated != null) throw new IOException("Body cut off: " + path);
+      body.write(bytes, offset + half, length - half);
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+    }
+  }
 }
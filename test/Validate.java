@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2022, 2024, Oracle and/or its affiliates.
+ * Copyright (c) 2022, 2026, Oracle and/or its affiliates.
  *
  * This source code is licensed under the UPL license found in the
  * LICENSE.txt file in the root directory of this source tree.
@@ -8,22 +8,55 @@
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+/**
+ * Validate that all URIs of properties files are available.
+ *
+ * <p>Each distinct URI is requested once, concurrently with at most {@code
+ * -Dconcurrency-per-host=4} requests in flight per host. Responses with status {@code 429} or
+ * {@code 503} are retried after the delay given by their {@code Retry-After} header, or after an
+ * exponentially growing one, and lower the number of requests in flight to their host by one.
+ * Failures are collected per URI and reported after all properties files were validated.
+ */
 class Validate {
 
+  /** Maximum number of attempts to request a URI that is answered with backpressure. */
+  static final int MAX_ATTEMPTS = 5;
+
+  /** Maximum delay to wait between two attempts, regardless of what a server asks for. */
+  static final Duration MAX_DELAY = Duration.ofMinutes(1);
+
   public static void main(String... args) throws Exception {
-    var validate = new Validate();
+    var validate = new Validate(Integer.getInteger("concurrency-per-host", 4));
     var paths = args.length == 0 ? findProperties() : Stream.of(args).map(Path::of).toList();
-    for (var path : paths) validate.validateProperties(path);
+    var failures = new ArrayList<String>();
+    for (var path : paths) failures.addAll(validate.validateProperties(path));
+    if (failures.isEmpty()) return;
+    System.err.println();
+    failures.forEach(System.err::println);
+    throw new AssertionError(failures.size() + " properties not OK");
   }
 
   static List<Path> findProperties() throws Exception {
@@ -37,38 +70,137 @@ class Validate {
   }
 
   final HttpClient http = HttpClient.newBuilder().followRedirects(Redirect.NORMAL).build();
+  final Map<String, Host> hosts = new ConcurrentHashMap<>();
+  final int concurrencyPerHost;
+
+  Validate(int concurrencyPerHost) {
+    if (concurrencyPerHost < 1) throw new IllegalArgumentException("concurrency-per-host < 1");
+    this.concurrencyPerHost = concurrencyPerHost;
+  }
 
-  void validateProperties(Path path) throws Exception {
+  record Result(URI uri, int status, long size, Duration latency, int attempts) {}
+
+  /** Requests in flight to a host, their limit lowered whenever the host applies backpressure. */
+  record Host(Semaphore permits, AtomicInteger limit) {
+    /** Lower the limit by one, unless a single request is left, by keeping a permit acquired. */
+    boolean retirePermit() {
+      return limit.getAndUpdate(permits -> permits > 1 ? permits - 1 : permits) > 1;
+    }
+  }
+
+  /** Validate the URIs of a properties file, returning the failures of its keys. */
+  List<String> validateProperties(Path path) throws Exception {
     if (Files.notExists(path)) throw new IllegalArgumentException("no such file: " + path);
     System.out.println();
     System.out.println(path);
     var properties = new Properties();
     properties.load(Files.newBufferedReader(path));
-    for (var key : new TreeSet<>(properties.stringPropertyNames())) {
-      var value = properties.getProperty(key);
-      validateProperty(key, value);
+    var keys = new TreeMap<String, String>(); // key -> value
+    var uris = new TreeMap<String, Future<Result>>(); // distinct value -> result
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var key : properties.stringPropertyNames()) {
+        var value = properties.getProperty(key);
+        keys.put(key, value);
+        if (!value.startsWith("http") || uris.containsKey(value)) continue;
+        uris.put(value, executor.submit(() -> validateUri(URI.create(value))));
+      }
+    }
+    var failures = new ArrayList<String>();
+    for (var entry : keys.entrySet()) {
+      var key = entry.getKey();
+      var value = entry.getValue();
+      if (!uris.containsKey(value)) {
+        System.err.printf("Unknown property protocol %s=%s%n", key, value);
+        continue;
+      }
+      Result result;
+      try {
+        result = uris.get(value).get();
+      } catch (ExecutionException exception) {
+        var cause = exception.getCause();
+        failures.add("Request for '%s' failed: %s %s".formatted(key, cause, value));
+        continue;
+      }
+      if (result.status() != 200) {
+        failures.add("Status for '%s' not OK: %d %s".formatted(key, result.status(), value));
+        continue;
+      }
+      System.out.printf("%s%n", key);
+      System.out.printf("  uri     = %s%n", result.uri());
+      System.out.printf("  size    = %,11d bytes%n", result.size());
+      System.out.printf("  latency = %,11d ms%n", result.latency().toMillis());
     }
+    var total = Duration.ZERO;
+    for (var future : uris.values()) {
+      if (future.state() == Future.State.SUCCESS) total = total.plus(future.resultNow().latency());
+    }
+    var summary = "%d keys, %d distinct URIs, %d ms total latency, %d failures%n";
+    System.out.printf(summary, keys.size(), uris.size(), total.toMillis(), failures.size());
+    return failures.stream().map(failure -> path + ": " + failure).toList();
   }
 
-  private void validateProperty(String key, String value) throws Exception {
-    if (value.startsWith("http")) {
-      var uri = URI.create(value);
-      var request = HttpRequest.newBuilder(uri).method("HEAD", BodyPublishers.noBody()).build();
-      var response = http.send(request, BodyHandlers.discarding());
-      if (response.statusCode() == 200) {
-        var size = response.headers().firstValueAsLong("Content-Length").orElse(-1);
-        System.out.printf("%s%n", key);
-        System.out.printf("  uri  = %s%n", uri);
-        System.out.printf("  size = %,11d bytes%n", size);
-      } else {
+  Result validateUri(URI uri) throws Exception {
+    var host =
+        hosts.computeIfAbsent(
+            uri.getHost(),
+            name ->
+                new Host(new Semaphore(concurrencyPerHost), new AtomicInteger(concurrencyPerHost)));
+    var request = HttpRequest.newBuilder(uri).method("HEAD", BodyPublishers.noBody()).build();
+    for (int attempt = 1; ; attempt++) {
+      HttpResponse<Void> response = null;
+      host.permits().acquire();
+      var start = System.nanoTime();
+      try {
+        response = http.send(request, BodyHandlers.discarding());
+      } finally {
+        var backpressure = response != null && isBackpressure(response.statusCode());
+        if (backpressure && host.retirePermit()) {
+          var limit = host.limit().get();
+          System.err.printf("Lowered concurrency for %s to %d%n", uri.getHost(), limit);
+        } else {
+          host.permits().release();
+        }
+      }
+      var latency = Duration.ofNanos(System.nanoTime() - start); // excluding the wait for a permit
+      var status = response.statusCode();
+      if (isBackpressure(status) && attempt < MAX_ATTEMPTS) {
+        var delay = computeRetryDelay(response.headers(), attempt);
+        if (delay.compareTo(MAX_DELAY) > 0) delay = MAX_DELAY;
+        System.err.printf("Status %d for %s, retrying in %d ms%n", status, uri, delay.toMillis());
+        Thread.sleep(delay);
+        continue;
+      }
+      if (status != 200) {
         response
             .headers()
             .map()
             .forEach((header, entry) -> System.err.printf("%s -> %s%n", header, entry));
-        throw new AssertionError("Status for '%s' not OK: %s".formatted(key, response));
       }
-      return;
+      var size = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+      return new Result(uri, status, size, latency, attempt);
+    }
+  }
+
+  /** Test for a status asking clients to slow down. */
+  static boolean isBackpressure(int status) {
+    return status == 429 || status == 503;
+  }
+
+  /** Compute the delay to wait before the next attempt, honouring a Retry-After header. */
+  static Duration computeRetryDelay(HttpHeaders headers, int attempt) {
+    var backoff = Duration.ofMillis(500L << Math.min(attempt - 1, 6));
+    var retryAfter = headers.firstValue("Retry-After").orElse("");
+    if (retryAfter.isBlank()) return backoff;
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.strip())));
+    } catch (NumberFormatException exception) {
+      try {
+        var date = ZonedDateTime.parse(retryAfter.strip(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+        return delay.isNegative() ? Duration.ZERO : delay;
+      } catch (RuntimeException ignore) {
+        return backoff;
+      }
     }
-    System.err.printf("Unknown property protocol %s=%s%n", key, value);
   }
 }